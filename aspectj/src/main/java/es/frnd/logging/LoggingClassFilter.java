@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.IllegalClassFormatException;
+import java.nio.charset.StandardCharsets;
+import java.security.ProtectionDomain;
+
+/**
+ * Hands to the AspectJ weaver only the classes that can contain a
+ * {@link Logging} join point, so the load-time weaver does not parse every
+ * class loaded by the application.
+ *
+ * A class can only contain such a join point if it is annotated with
+ * {@link Logging} or has annotated methods, and then its constant pool holds
+ * the descriptor of the annotation. The constant pool is the first part of the
+ * class file, so the scan reads a few kilobytes at most and allocates nothing.
+ * Classes that only inherit a type level annotation do not reference it, and
+ * are handed to the weaver when their package is given as included.
+ *
+ * @author fernando
+ */
+public final class LoggingClassFilter implements ClassFileTransformer {
+
+    private static final byte[] DESCRIPTOR = "Les/frnd/logging/Logging;".getBytes(StandardCharsets.US_ASCII);
+    private final ClassFileTransformer weaver;
+    private final String[] includedPackages;
+
+    /**
+     * @param weaver the transformer of the classes that pass the filter,
+     * normally the AspectJ weaver.
+     * @param includedPackages the packages, such as <code>com.acme.</code>,
+     * whose classes are handed to the weaver whatever they reference.
+     */
+    public LoggingClassFilter(ClassFileTransformer weaver, String... includedPackages) {
+        this.weaver = weaver;
+        this.includedPackages = new String[includedPackages.length];
+        for (int i = 0; i < includedPackages.length; i++) {
+            this.includedPackages[i] = includedPackages[i].replace('.', '/');
+        }
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+            ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
+        if (loader == null || !(references(classfileBuffer) || isIncluded(className))) {
+            return null;
+        }
+        return weaver.transform(loader, className, classBeingRedefined, protectionDomain, classfileBuffer);
+    }
+
+    private boolean isIncluded(String className) {
+        for (String prefix : includedPackages) {
+            if (className != null && className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Scans the constant pool of a class for the descriptor of
+     * {@link Logging}. A class file that can not be scanned is considered to
+     * reference it, so the weaver decides what to do with it.
+     *
+     * @param bytes the class file.
+     * @return true if the class may reference {@link Logging}.
+     */
+    static boolean references(byte[] bytes) {
+        try {
+            if (u2(bytes, 0) != 0xCAFE || u2(bytes, 2) != 0xBABE) {
+                return true;
+            }
+            int count = u2(bytes, 8);
+            int offset = 10;
+            for (int i = 1; i < count; i++) {
+                switch (bytes[offset]) {
+                    case 1: // Utf8
+                        int length = u2(bytes, offset + 1);
+                        if (length == DESCRIPTOR.length && matches(bytes, offset + 3)) {
+                            return true;
+                        }
+                        offset += 3 + length;
+                        break;
+                    case 3: // Integer
+                    case 4: // Float
+                    case 9: // Fieldref
+                    case 10: // Methodref
+                    case 11: // InterfaceMethodref
+                    case 12: // NameAndType
+                    case 17: // Dynamic
+                    case 18: // InvokeDynamic
+                        offset += 5;
+                        break;
+                    case 5: // Long
+                    case 6: // Double
+                        offset += 9;
+                        i++;
+                        break;
+                    case 7: // Class
+                    case 8: // String
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        offset += 3;
+                        break;
+                    case 15: // MethodHandle
+                        offset += 4;
+                        break;
+                    default:
+                        return true;
+                }
+            }
+            return false;
+        } catch (ArrayIndexOutOfBoundsException truncated) {
+            return true;
+        }
+    }
+
+    private static boolean matches(byte[] bytes, int offset) {
+        for (int i = 0; i < DESCRIPTOR.length; i++) {
+            if (bytes[offset + i] != DESCRIPTOR[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int u2(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 8 | bytes[offset + 1] & 0xFF;
+    }
+}
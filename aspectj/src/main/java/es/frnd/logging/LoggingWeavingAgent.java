@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.lang.instrument.Instrumentation;
+import org.aspectj.weaver.loadtime.ClassPreProcessorAgentAdapter;
+
+/**
+ * A Java agent that weaves {@link WovenMethodLoggingAspect} into the
+ * {@link Logging} methods when their classes are loaded, instead of at build
+ * time. It replaces the agent of <code>aspectjweaver.jar</code>, which must be
+ * on the class path, and hands to the weaver only the classes that pass a
+ * {@link LoggingClassFilter}:
+ *
+ * <pre>
+ * java -javaagent:logging-annotation-aspectj.jar -cp aspectjweaver.jar:... Main
+ * </pre>
+ *
+ * The weaver reads its configuration from {@value #AOP_XML}, unless the
+ * <code>org.aspectj.weaver.loadtime.configuration</code> system property says
+ * otherwise, so the <code>META-INF/aop.xml</code> files of other aspects are
+ * not applied. The options of the agent are a comma separated list of
+ * packages whose classes are always handed to the weaver, for the classes that
+ * only inherit a type level {@link Logging} annotation.
+ *
+ * @author fernando
+ */
+public final class LoggingWeavingAgent {
+
+    /**
+     * The configuration of the weaver, declaring the aspect. The
+     * <code>LoggingIndexProcessor</code> can generate one for the application
+     * that restricts the weaving to its annotated classes.
+     */
+    public static final String AOP_XML = "META-INF/aop-logging.xml";
+    private static final String CONFIGURATION = "org.aspectj.weaver.loadtime.configuration";
+
+    private LoggingWeavingAgent() {
+    }
+
+    /**
+     * Registers the filtered weaver.
+     *
+     * @param options the packages always handed to the weaver, comma
+     * separated, or null.
+     * @param instrumentation the instrumentation of the JVM.
+     */
+    public static void premain(String options, Instrumentation instrumentation) {
+        if (System.getProperty(CONFIGURATION) == null) {
+            System.setProperty(CONFIGURATION, AOP_XML);
+        }
+        String[] includedPackages = options == null || options.trim().isEmpty() ? new String[0] : options.trim().split("\\s*,\\s*");
+        instrumentation.addTransformer(new LoggingClassFilter(new ClassPreProcessorAgentAdapter(), includedPackages));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author fernando
+ */
+public class LoggingClassFilterTest {
+
+    private final List<String> transformed = new ArrayList<String>();
+    private final ClassFileTransformer weaver = new ClassFileTransformer() {
+        @Override
+        public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+            transformed.add(className);
+            return classfileBuffer;
+        }
+    };
+
+    /**
+     * Test of references method, of class LoggingClassFilter.
+     */
+    @Test
+    public void testReferences() throws IOException {
+        System.out.println("references");
+
+        assertTrue(LoggingClassFilter.references(bytes(WovenMethodLoggingAspectTest.Advised.class)));
+        assertTrue(LoggingClassFilter.references(bytes(WovenMethodLoggingAspectTest.AdvisedType.class)));
+        assertFalse(LoggingClassFilter.references(bytes(LoggingClassFilterTest.class)));
+        assertFalse(LoggingClassFilter.references(bytes(String.class)));
+        assertTrue(LoggingClassFilter.references(new byte[]{1, 2, 3}));
+        byte[] truncated = bytes(LoggingClassFilterTest.class);
+        assertTrue(LoggingClassFilter.references(Arrays.copyOf(truncated, 64)));
+    }
+
+    /**
+     * Test of transform method, of class LoggingClassFilter.
+     */
+    @Test
+    public void testTransform() throws Exception {
+        System.out.println("transform");
+
+        LoggingClassFilter instance = new LoggingClassFilter(weaver, "es.frnd.other.");
+        ClassLoader loader = getClass().getClassLoader();
+        byte[] advised = bytes(WovenMethodLoggingAspectTest.AdvisedType.class);
+        byte[] plain = bytes(LoggingClassFilterTest.class);
+
+        assertSame(advised, instance.transform(loader, "es/frnd/logging/WovenMethodLoggingAspectTest$AdvisedType", null, null, advised));
+        assertNull(instance.transform(loader, "es/frnd/logging/LoggingClassFilterTest", null, null, plain));
+        assertSame(plain, instance.transform(loader, "es/frnd/other/Subclass", null, null, plain));
+        assertNull(instance.transform(null, "es/frnd/logging/WovenMethodLoggingAspectTest$AdvisedType", null, null, advised));
+        assertEquals(Arrays.asList("es/frnd/logging/WovenMethodLoggingAspectTest$AdvisedType", "es/frnd/other/Subclass"), transformed);
+    }
+
+    private static byte[] bytes(Class<?> type) throws IOException {
+        String name = type.getName();
+        InputStream input = type.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class");
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Runs against test classes woven by ajc with {@link WovenMethodLoggingAspect}.
+ *
+ * @author fernando
+ */
+public class WovenMethodLoggingAspectTest {
+
+    private final List<String> messages = new ArrayList<String>();
+    private final AppenderSkeleton appender = new AppenderSkeleton() {
+        @Override
+        protected void append(LoggingEvent event) {
+            messages.add(event.getRenderedMessage());
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean requiresLayout() {
+            return false;
+        }
+    };
+    private final Logger logger = Logger.getLogger(Advised.class);
+    private final Logger typeLogger = Logger.getLogger(AdvisedType.class);
+
+    @Before
+    public void setUp() {
+        logger.addAppender(appender);
+        logger.setLevel(Level.DEBUG);
+        typeLogger.addAppender(appender);
+        typeLogger.setLevel(Level.DEBUG);
+    }
+
+    @After
+    public void tearDown() {
+        logger.removeAppender(appender);
+        logger.setLevel(null);
+        typeLogger.removeAppender(appender);
+        typeLogger.setLevel(null);
+    }
+
+    /**
+     * Test of logBefore and logReturn methods, of class WovenMethodLoggingAspect.
+     */
+    @Test
+    public void testLogBeforeAndReturn() {
+        System.out.println("logBeforeAndReturn");
+
+        new Advised().add(1, 2, 3);
+
+        assertEquals(2, messages.size());
+        assertEquals("Calling method add with args 1 3", messages.get(0));
+        assertEquals("Returning method add with 6", messages.get(1));
+    }
+
+    /**
+     * Test of logException method, of class WovenMethodLoggingAspect.
+     */
+    @Test
+    public void testLogException() {
+        System.out.println("logException");
+
+        try {
+            new Advised().fail();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        assertEquals(2, messages.size());
+        assertEquals("Calling method fail with args", messages.get(0));
+        assertEquals("Method fail is trowing an exception: java.lang.IllegalStateException: failed", messages.get(1));
+    }
+
+    /**
+     * Test of the timed methods, of class WovenMethodLoggingAspect.
+     */
+    @Test
+    public void testTimed() throws Exception {
+        System.out.println("timed");
+
+        new Advised().timed("1");
+        try {
+            new Advised().timedFail();
+            fail();
+        } catch (Exception expected) {
+            assertEquals("checked", expected.getMessage());
+        }
+
+        assertEquals(4, messages.size());
+        assertEquals("Calling method timed with args 1", messages.get(0));
+        assertTrue(messages.get(1), messages.get(1).matches("Returning method timed with 1 in \\d+ ns"));
+        assertEquals("Calling method timedFail with args", messages.get(2));
+        assertTrue(messages.get(3), messages.get(3).matches("Method timedFail is trowing an exception: java.lang.Exception: checked after \\d+ ns"));
+    }
+
+    /**
+     * Test that nothing is logged when the severity is disabled.
+     */
+    @Test
+    public void testDisabled() {
+        System.out.println("disabled");
+        logger.setLevel(Level.INFO);
+
+        new Advised().add(1, 2, 3);
+
+        assertTrue(messages.isEmpty());
+    }
+
+    /**
+     * Test of the timed methods whose severity changes during a call, of
+     * class WovenMethodLoggingAspect.
+     */
+    @Test
+    public void testTimedReconfigured() {
+        System.out.println("timedReconfigured");
+
+        logger.setLevel(Level.INFO);
+        new Advised().timedRun(() -> logger.setLevel(Level.DEBUG));
+        new Advised().timedRun(() -> logger.setLevel(Level.INFO));
+        logger.setLevel(Level.DEBUG);
+        new Advised().timed("1");
+
+        assertEquals(3, messages.size());
+        assertTrue(messages.get(0), messages.get(0).startsWith("Calling method timedRun with args"));
+        assertEquals("Calling method timed with args 1", messages.get(1));
+        assertTrue(messages.get(2), messages.get(2).matches("Returning method timed with 1 in \\d+ ns"));
+    }
+
+    /**
+     * Test of the sampled methods, of class WovenMethodLoggingAspect.
+     */
+    @Test
+    public void testSampled() {
+        System.out.println("sampled");
+
+        for (int i = 0; i < 6; i++) {
+            new Advised().sampled(i);
+        }
+
+        assertEquals(5, messages.size());
+        assertEquals("Calling method sampled with args 0", messages.get(0));
+        assertEquals("Returning method sampled with 0", messages.get(1));
+        assertEquals("Method sampled was not logged 2 times", messages.get(2));
+        assertEquals("Calling method sampled with args 3", messages.get(3));
+        assertEquals("Returning method sampled with 3", messages.get(4));
+    }
+
+    /**
+     * Test of the methods of an annotated type, of class
+     * WovenMethodLoggingAspect.
+     */
+    @Test
+    public void testType() {
+        System.out.println("type");
+
+        AdvisedType advised = new AdvisedType();
+        advised.twice(2);
+        advised.hidden();
+        advised.timed();
+
+        assertEquals(4, messages.size());
+        assertEquals("Calling method twice with args 2", messages.get(0));
+        assertEquals("Returning method twice with 4", messages.get(1));
+        assertEquals("Calling method timed with args", messages.get(2));
+        assertTrue(messages.get(3), messages.get(3).matches("Returning method timed with null in \\d+ ns"));
+    }
+
+    /**
+     * Test of the batch scope methods, of class WovenMethodLoggingAspect.
+     */
+    @Test
+    public void testBatchScope() {
+        System.out.println("batchScope");
+
+        BatchingLogDispatcher dispatcher = new BatchingLogDispatcher(64, 1, TimeUnit.HOURS);
+        WovenMethodLoggingAspect.aspectOf().setDispatcher(dispatcher);
+        try {
+            new Advised().batch();
+        } finally {
+            WovenMethodLoggingAspect.aspectOf().setDispatcher(LogDispatcher.SYNCHRONOUS);
+            dispatcher.shutdown();
+        }
+
+        assertEquals(1, messages.size());
+        String nl = System.lineSeparator();
+        assertEquals("Calling method batch with args" + nl
+                + "Calling method add with args 1 3" + nl
+                + "Returning method add with 6" + nl
+                + "Returning method batch with 6", messages.get(0));
+    }
+
+    /**
+     * Test of the deduplication of exceptions, of class
+     * WovenMethodLoggingAspect.
+     */
+    @Test
+    public void testExceptionDeduplicator() {
+        System.out.println("exceptionDeduplicator");
+
+        WovenMethodLoggingAspect.aspectOf().setExceptionDeduplicator(new ExceptionDeduplicator(5, 1, TimeUnit.HOURS));
+        try {
+            for (int i = 0; i < 2; i++) {
+                try {
+                    new Advised().failNested();
+                    fail();
+                } catch (IllegalStateException expected) {
+                }
+            }
+        } finally {
+            WovenMethodLoggingAspect.aspectOf().setExceptionDeduplicator(null);
+        }
+
+        assertEquals(5, messages.size());
+        assertEquals("Calling method failNested with args", messages.get(0));
+        assertEquals("Calling method fail with args", messages.get(1));
+        assertEquals("Method fail is trowing an exception: java.lang.IllegalStateException: failed", messages.get(2));
+        assertEquals("Calling method failNested with args", messages.get(3));
+        assertEquals("Calling method fail with args", messages.get(4));
+    }
+
+    /**
+     * Test of the advices with a method returning a CompletionStage, of class
+     * WovenMethodLoggingAspect.
+     */
+    @Test
+    public void testAsync() {
+        System.out.println("async");
+
+        CompletableFuture<String> future = new CompletableFuture<String>();
+        new Advised().async(future);
+
+        assertEquals(1, messages.size());
+        future.complete("done");
+
+        assertEquals(2, messages.size());
+        assertTrue(messages.get(0).startsWith("Calling method async with args"));
+        assertEquals("Returning method async with done", messages.get(1));
+    }
+
+    static class Advised {
+
+        @Logging
+        CompletableFuture<String> async(CompletableFuture<String> future) {
+            return future.thenApply(value -> value);
+        }
+
+        @Logging(sampleRate = 3)
+        int sampled(int value) {
+            return value;
+        }
+
+        @Logging(batchScope = true)
+        int batch() {
+            return add(1, 2, 3);
+        }
+
+        @Logging
+        int add(int first, @LogExclude int second, int third) {
+            return first + second + third;
+        }
+
+        @Logging
+        void failNested() {
+            fail();
+        }
+
+        @Logging
+        void fail() {
+            throw new IllegalStateException("failed");
+        }
+
+        @Logging(timed = true)
+        String timed(String value) {
+            return value;
+        }
+
+        @Logging(timed = true)
+        void timedRun(Runnable runnable) {
+            runnable.run();
+        }
+
+        @Logging(timed = true)
+        void timedFail() throws Exception {
+            throw new Exception("checked");
+        }
+    }
+
+    @Logging
+    static class AdvisedType {
+
+        public int twice(int value) {
+            return 2 * value;
+        }
+
+        void hidden() {
+        }
+
+        @Logging(timed = true)
+        public void timed() {
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+/**
+ * The methods measured by {@link WovenLoggingBenchmark}, woven with
+ * {@link WovenMethodLoggingAspect} at build time.
+ *
+ * @author fernando
+ */
+public class AdvisedService {
+
+    /**
+     * Thrown by the failing methods, without a stack trace so that only the
+     * cost of the advice is measured.
+     */
+    static final RuntimeException FAILURE = new RuntimeException("failure", null, false, false) {
+        private static final long serialVersionUID = 1L;
+    };
+
+    public int unadvised(int a, int b, int c, int d) {
+        return a + b + c + d;
+    }
+
+    @Logging
+    public int params0() {
+        return 0;
+    }
+
+    @Logging
+    public int params1(int a) {
+        return a;
+    }
+
+    @Logging
+    public int params4(int a, int b, int c, int d) {
+        return a + b + c + d;
+    }
+
+    @Logging
+    public int params4Excluded(int a, @LogExclude int b, @LogExclude int c, @LogExclude int d) {
+        return a + b + c + d;
+    }
+
+    @Logging
+    public int params16(int a0, int a1, int a2, int a3, int a4, int a5, int a6, int a7,
+            int a8, int a9, int a10, int a11, int a12, int a13, int a14, int a15) {
+        return a0 + a1 + a2 + a3 + a4 + a5 + a6 + a7 + a8 + a9 + a10 + a11 + a12 + a13 + a14 + a15;
+    }
+
+    @Logging
+    public int params16Excluded(int a0, @LogExclude int a1, @LogExclude int a2, @LogExclude int a3,
+            @LogExclude int a4, @LogExclude int a5, @LogExclude int a6, @LogExclude int a7,
+            @LogExclude int a8, @LogExclude int a9, @LogExclude int a10, @LogExclude int a11,
+            @LogExclude int a12, @LogExclude int a13, @LogExclude int a14, @LogExclude int a15) {
+        return a0 + a1 + a2 + a3 + a4 + a5 + a6 + a7 + a8 + a9 + a10 + a11 + a12 + a13 + a14 + a15;
+    }
+
+    @Logging(severity = Severity.TRACE)
+    public int trace(int a) {
+        return a;
+    }
+
+    @Logging(severity = Severity.INFO)
+    public int info(int a) {
+        return a;
+    }
+
+    @Logging(severity = Severity.WARN)
+    public int warn(int a) {
+        return a;
+    }
+
+    @Logging(severity = Severity.ERROR)
+    public int error(int a) {
+        return a;
+    }
+
+    @Logging
+    public int failing(int a) {
+        throw FAILURE;
+    }
+
+    @Logging(timed = true)
+    public int timed(int a) {
+        return a;
+    }
+
+    @Logging(timed = true)
+    public int timedFailing(int a) {
+        throw FAILURE;
+    }
+}
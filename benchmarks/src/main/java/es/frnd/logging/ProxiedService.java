@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+/**
+ * The methods measured by {@link ProxiedLoggingBenchmark}, advised with
+ * {@link MethodLoggingAdvice} through a Spring proxy. The aspect of the
+ * benchmarks module is kept off this type, see <code>aop-ajc.xml</code>.
+ *
+ * @author fernando
+ */
+public class ProxiedService {
+
+    public int unadvised(int a, int b, int c, int d) {
+        return a + b + c + d;
+    }
+
+    @Logging
+    public int params0() {
+        return 0;
+    }
+
+    @Logging
+    public int params1(int a) {
+        return a;
+    }
+
+    @Logging
+    public int params4(int a, int b, int c, int d) {
+        return a + b + c + d;
+    }
+
+    @Logging
+    public int params4Excluded(int a, @LogExclude int b, @LogExclude int c, @LogExclude int d) {
+        return a + b + c + d;
+    }
+
+    @Logging(severity = Severity.TRACE)
+    public int trace(int a) {
+        return a;
+    }
+
+    @Logging(severity = Severity.INFO)
+    public int info(int a) {
+        return a;
+    }
+
+    @Logging(severity = Severity.WARN)
+    public int warn(int a) {
+        return a;
+    }
+
+    @Logging(severity = Severity.ERROR)
+    public int error(int a) {
+        return a;
+    }
+
+    @Logging
+    public int failing(int a) {
+        throw AdvisedService.FAILURE;
+    }
+
+    @Logging(timed = true)
+    public int timed(int a) {
+        return a;
+    }
+}
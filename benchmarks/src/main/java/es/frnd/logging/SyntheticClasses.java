@@ -0,0 +1,158 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the class files of the synthetic class path loaded by
+ * {@link WeavingStartupBenchmark}: public classes with a constructor and a few
+ * <code>int m(int)</code> methods, the first of them annotated with
+ * {@link Logging} in the advised classes.
+ *
+ * @author fernando
+ */
+final class SyntheticClasses {
+
+    private final List<byte[]> constants = new ArrayList<byte[]>();
+
+    private SyntheticClasses() {
+    }
+
+    /**
+     * @param name the internal name of the class.
+     * @param methods the number of methods besides the constructor.
+     * @param advised true to annotate the first method with {@link Logging}.
+     * @return the class file.
+     */
+    static byte[] generate(String name, int methods, boolean advised) {
+        try {
+            return new SyntheticClasses().write(name, methods, advised);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] write(String name, int methods, boolean advised) throws IOException {
+        int thisClass = classConstant(name);
+        int superClass = classConstant("java/lang/Object");
+        int init = utf8("<init>");
+        int voidDescriptor = utf8("()V");
+        int superInit = constant(10, superClass, constant(12, init, voidDescriptor));
+        int code = utf8("Code");
+        int intDescriptor = utf8("(I)I");
+        int annotations = advised ? utf8("RuntimeVisibleAnnotations") : 0;
+        int logging = advised ? utf8("Les/frnd/logging/Logging;") : 0;
+        int[] names = new int[methods];
+        for (int i = 0; i < methods; i++) {
+            names[i] = utf8("m" + i);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + 32 * methods);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(52);
+        out.writeShort(constants.size() + 1);
+        for (byte[] constant : constants) {
+            out.write(constant);
+        }
+        out.writeShort(0x21);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(methods + 1);
+
+        out.writeShort(0x1);
+        out.writeShort(init);
+        out.writeShort(voidDescriptor);
+        out.writeShort(1);
+        out.writeShort(code);
+        out.writeInt(17);
+        out.writeShort(1);
+        out.writeShort(1);
+        out.writeInt(5);
+        out.writeByte(0x2a); // aload_0
+        out.writeByte(0xb7); // invokespecial
+        out.writeShort(superInit);
+        out.writeByte(0xb1); // return
+        out.writeShort(0);
+        out.writeShort(0);
+
+        for (int i = 0; i < methods; i++) {
+            boolean annotated = advised && i == 0;
+            out.writeShort(0x1);
+            out.writeShort(names[i]);
+            out.writeShort(intDescriptor);
+            out.writeShort(annotated ? 2 : 1);
+            out.writeShort(code);
+            out.writeInt(14);
+            out.writeShort(1);
+            out.writeShort(2);
+            out.writeInt(2);
+            out.writeByte(0x1b); // iload_1
+            out.writeByte(0xac); // ireturn
+            out.writeShort(0);
+            out.writeShort(0);
+            if (annotated) {
+                out.writeShort(annotations);
+                out.writeInt(6);
+                out.writeShort(1);
+                out.writeShort(logging);
+                out.writeShort(0);
+            }
+        }
+        out.writeShort(0);
+        return bytes.toByteArray();
+    }
+
+    private int utf8(String value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1);
+        out.writeUTF(value);
+        constants.add(bytes.toByteArray());
+        return constants.size();
+    }
+
+    private int classConstant(String name) throws IOException {
+        return constant(7, utf8(name));
+    }
+
+    private int constant(int tag, int... indexes) {
+        byte[] constant = new byte[1 + 2 * indexes.length];
+        constant[0] = (byte) tag;
+        for (int i = 0; i < indexes.length; i++) {
+            constant[1 + 2 * i] = (byte) (indexes[i] >> 8);
+            constant[2 + 2 * i] = (byte) indexes[i];
+        }
+        constants.add(constant);
+        return constants.size();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.util.concurrent.TimeUnit;
+import org.aspectj.weaver.loadtime.ClassPreProcessorAgentAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time the load-time weaver adds to the startup of an application
+ * with a large class path: the classes of a synthetic class path, one in a
+ * hundred with a {@link Logging} method, are handed to the AspectJ weaver one
+ * by one, as the agent would when they are loaded, either all of them or only
+ * those that pass the {@link LoggingClassFilter} of
+ * {@link LoggingWeavingAgent}. Every invocation uses a new class loader, so the
+ * weaver starts from scratch as in a new JVM.
+ *
+ * @author fernando
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class WeavingStartupBenchmark {
+
+    @Param({"10000"})
+    int classes;
+    @Param({"false", "true"})
+    boolean filtered;
+    private String[] names;
+    private byte[][] classFiles;
+    private ClassFileTransformer transformer;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("org.aspectj.weaver.loadtime.configuration", LoggingWeavingAgent.AOP_XML);
+        names = new String[classes];
+        classFiles = new byte[classes][];
+        for (int i = 0; i < classes; i++) {
+            names[i] = "synthetic/p" + i % 100 + "/Type" + i;
+            classFiles[i] = SyntheticClasses.generate(names[i], 8, i % 100 == 0);
+        }
+        ClassFileTransformer weaver = new ClassPreProcessorAgentAdapter();
+        transformer = filtered ? new LoggingClassFilter(weaver) : weaver;
+    }
+
+    @Benchmark
+    public int startup() throws Exception {
+        ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {
+        };
+        int woven = 0;
+        for (int i = 0; i < classes; i++) {
+            byte[] transformed = transformer.transform(loader, names[i], null, null, classFiles[i]);
+            if (transformed != null && transformed != classFiles[i]) {
+                woven++;
+            }
+        }
+        return woven;
+    }
+}
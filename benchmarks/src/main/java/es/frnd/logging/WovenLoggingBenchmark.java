@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.impl.DiscardingLogger;
+
+/**
+ * Measures the cost per call of the methods woven with
+ * {@link WovenMethodLoggingAspect}, with the log level disabled and enabled.
+ * The enter and return messages are measured by the successful methods, the
+ * exception message by the failing ones. Run with <code>-prof gc</code> to see
+ * the allocations per call.
+ *
+ * @author fernando
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WovenLoggingBenchmark {
+
+    @Param({"false", "true"})
+    boolean enabled;
+    private final AdvisedService service = new AdvisedService();
+    private int value = 1;
+
+    @Setup
+    public void setUp() {
+        DiscardingLogger.setEnabled(enabled);
+    }
+
+    @Benchmark
+    public int unadvised() {
+        return service.unadvised(value, value, value, value);
+    }
+
+    @Benchmark
+    public int params0() {
+        return service.params0();
+    }
+
+    @Benchmark
+    public int params1() {
+        return service.params1(value);
+    }
+
+    @Benchmark
+    public int params4() {
+        return service.params4(value, value, value, value);
+    }
+
+    @Benchmark
+    public int params4Excluded() {
+        return service.params4Excluded(value, value, value, value);
+    }
+
+    @Benchmark
+    public int params16() {
+        return service.params16(value, value, value, value, value, value, value, value,
+                value, value, value, value, value, value, value, value);
+    }
+
+    @Benchmark
+    public int params16Excluded() {
+        return service.params16Excluded(value, value, value, value, value, value, value, value,
+                value, value, value, value, value, value, value, value);
+    }
+
+    /**
+     * Calls methods of every severity, so the severity checks and emits of the
+     * advice see all of them.
+     */
+    @Benchmark
+    public int mixedSeverities() {
+        return service.trace(value) + service.params1(value) + service.info(value) + service.warn(value)
+                + service.error(value);
+    }
+
+    @Benchmark
+    public Object exception() {
+        try {
+            return service.failing(value);
+        } catch (RuntimeException expected) {
+            return expected;
+        }
+    }
+
+    @Benchmark
+    public int timed() {
+        return service.timed(value);
+    }
+
+    @Benchmark
+    public Object timedException() {
+        try {
+            return service.timedFailing(value);
+        } catch (RuntimeException expected) {
+            return expected;
+        }
+    }
+}
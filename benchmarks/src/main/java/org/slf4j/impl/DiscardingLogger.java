@@ -0,0 +1,212 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.slf4j.impl;
+
+import org.slf4j.helpers.MarkerIgnoringBase;
+
+/**
+ * A logger that discards every message without formatting it, so the
+ * benchmarks measure the advice alone. All the levels are enabled or disabled
+ * at once with {@link #setEnabled(boolean)}.
+ *
+ * @author fernando
+ */
+public final class DiscardingLogger extends MarkerIgnoringBase {
+
+    private static final long serialVersionUID = 1L;
+    private static volatile boolean enabled;
+    /**
+     * The last values received, published so the JIT can not drop the calls.
+     */
+    private volatile Object lastFormat;
+    private volatile Object lastFirst;
+    private volatile Object lastSecond;
+
+    DiscardingLogger(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param enabled true to enable every level of every logger.
+     */
+    public static void setEnabled(boolean enabled) {
+        DiscardingLogger.enabled = enabled;
+    }
+
+    private void consume(String format, Object first, Object second) {
+        lastFormat = format;
+        lastFirst = first;
+        lastSecond = second;
+    }
+
+    @Override
+    public boolean isTraceEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void trace(String msg) {
+        consume(msg, null, null);
+    }
+
+    @Override
+    public void trace(String format, Object arg) {
+        consume(format, arg, null);
+    }
+
+    @Override
+    public void trace(String format, Object arg1, Object arg2) {
+        consume(format, arg1, arg2);
+    }
+
+    @Override
+    public void trace(String format, Object[] argArray) {
+        consume(format, argArray, null);
+    }
+
+    @Override
+    public void trace(String msg, Throwable t) {
+        consume(msg, t, null);
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void debug(String msg) {
+        consume(msg, null, null);
+    }
+
+    @Override
+    public void debug(String format, Object arg) {
+        consume(format, arg, null);
+    }
+
+    @Override
+    public void debug(String format, Object arg1, Object arg2) {
+        consume(format, arg1, arg2);
+    }
+
+    @Override
+    public void debug(String format, Object[] argArray) {
+        consume(format, argArray, null);
+    }
+
+    @Override
+    public void debug(String msg, Throwable t) {
+        consume(msg, t, null);
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void info(String msg) {
+        consume(msg, null, null);
+    }
+
+    @Override
+    public void info(String format, Object arg) {
+        consume(format, arg, null);
+    }
+
+    @Override
+    public void info(String format, Object arg1, Object arg2) {
+        consume(format, arg1, arg2);
+    }
+
+    @Override
+    public void info(String format, Object[] argArray) {
+        consume(format, argArray, null);
+    }
+
+    @Override
+    public void info(String msg, Throwable t) {
+        consume(msg, t, null);
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void warn(String msg) {
+        consume(msg, null, null);
+    }
+
+    @Override
+    public void warn(String format, Object arg) {
+        consume(format, arg, null);
+    }
+
+    @Override
+    public void warn(String format, Object arg1, Object arg2) {
+        consume(format, arg1, arg2);
+    }
+
+    @Override
+    public void warn(String format, Object[] argArray) {
+        consume(format, argArray, null);
+    }
+
+    @Override
+    public void warn(String msg, Throwable t) {
+        consume(msg, t, null);
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void error(String msg) {
+        consume(msg, null, null);
+    }
+
+    @Override
+    public void error(String format, Object arg) {
+        consume(format, arg, null);
+    }
+
+    @Override
+    public void error(String format, Object arg1, Object arg2) {
+        consume(format, arg1, arg2);
+    }
+
+    @Override
+    public void error(String format, Object[] argArray) {
+        consume(format, argArray, null);
+    }
+
+    @Override
+    public void error(String msg, Throwable t) {
+        consume(msg, t, null);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.slf4j.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+import org.slf4j.spi.LoggerFactoryBinder;
+
+/**
+ * Binds SLF4J to {@link DiscardingLogger} in the benchmarks.
+ *
+ * @author fernando
+ */
+public final class StaticLoggerBinder implements LoggerFactoryBinder {
+
+    /**
+     * The SLF4J API version this binding is compiled against.
+     */
+    public static String REQUESTED_API_VERSION = "1.6";
+
+    private static final StaticLoggerBinder SINGLETON = new StaticLoggerBinder();
+
+    private final ILoggerFactory loggerFactory = new ILoggerFactory() {
+
+        private final ConcurrentMap<String, Logger> loggers = new ConcurrentHashMap<String, Logger>();
+
+        @Override
+        public Logger getLogger(String name) {
+            Logger logger = loggers.get(name);
+            if (logger == null) {
+                loggers.putIfAbsent(name, new DiscardingLogger(name));
+                logger = loggers.get(name);
+            }
+            return logger;
+        }
+    };
+
+    private StaticLoggerBinder() {
+    }
+
+    /**
+     * @return the binder used by SLF4J.
+     */
+    public static StaticLoggerBinder getSingleton() {
+        return SINGLETON;
+    }
+
+    @Override
+    public ILoggerFactory getLoggerFactory() {
+        return loggerFactory;
+    }
+
+    @Override
+    public String getLoggerFactoryClassStr() {
+        return loggerFactory.getClass().getName();
+    }
+}
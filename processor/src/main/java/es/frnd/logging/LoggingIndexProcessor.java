@@ -0,0 +1,303 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates a {@link LoggingIndex} for every compilation unit with
+ * {@link Logging} methods or types, with the plans {@link MessageCache} would
+ * otherwise build at run time from the annotations of the methods and their
+ * parameters.
+ *
+ * The plans are built by {@link MessageCache} itself, from the annotations
+ * seen by the compiler, so the generated index always matches the plans built
+ * with reflection.
+ *
+ * With the <code>-Aes.frnd.logging.aopXml</code> option it also generates the
+ * <code>META-INF/aop-logging.xml</code> read by the load-time weaving agent of
+ * the aspectj module, restricting the weaving to the types with
+ * {@link Logging} methods.
+ *
+ * @author fernando
+ */
+@SupportedAnnotationTypes("es.frnd.logging.Logging")
+@SupportedOptions(LoggingIndexProcessor.AOP_XML_OPTION)
+public class LoggingIndexProcessor extends AbstractProcessor {
+
+    /**
+     * The option that enables the generation of the weaver configuration.
+     */
+    public static final String AOP_XML_OPTION = "es.frnd.logging.aopXml";
+    /**
+     * The weaver configuration read by the load-time weaving agent.
+     */
+    public static final String AOP_XML = "META-INF/aop-logging.xml";
+    private final MessageCache messageCache = new MessageCache(new LogRegistry());
+    /**
+     * The binary names of the types with {@link Logging} methods seen in every
+     * round.
+     */
+    private final Set<String> wovenTypes = new TreeSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Map<TypeElement, StringBuilder> indexes = new LinkedHashMap<TypeElement, StringBuilder>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(Logging.class)) {
+            Logging logAnnotation = element.getAnnotation(Logging.class);
+            if (element.getKind() == ElementKind.METHOD) {
+                index(indexes, (ExecutableElement) element, logAnnotation);
+            } else if (element.getKind().isClass() || element.getKind().isInterface()) {
+                for (ExecutableElement method : ElementFilter.methodsIn(element.getEnclosedElements())) {
+                    if (method.getModifiers().contains(Modifier.PUBLIC) && method.getAnnotation(Logging.class) == null) {
+                        index(indexes, method, logAnnotation);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<TypeElement, StringBuilder> index : indexes.entrySet()) {
+            write(index.getKey(), index.getValue());
+        }
+        if (roundEnv.processingOver() && !wovenTypes.isEmpty() && processingEnv.getOptions().containsKey(AOP_XML_OPTION)) {
+            writeAopXml();
+        }
+        return false;
+    }
+
+    /**
+     * Adds the registration of a method to the constructor of the index of its
+     * compilation unit.
+     */
+    private void index(Map<TypeElement, StringBuilder> indexes, ExecutableElement method, Logging logAnnotation) {
+        TypeElement type = (TypeElement) method.getEnclosingElement();
+        TypeElement topLevel = type;
+        while (topLevel.getEnclosingElement().getKind() != ElementKind.PACKAGE) {
+            topLevel = (TypeElement) topLevel.getEnclosingElement();
+        }
+        wovenTypes.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+        StringBuilder code = indexes.get(topLevel);
+        if (code == null) {
+            code = new StringBuilder();
+            indexes.put(topLevel, code);
+        }
+
+        List<? extends VariableElement> parameters = method.getParameters();
+        Annotation[][] parameterAnnotations = new Annotation[parameters.size()][];
+        StringBuilder key = new StringBuilder(processingEnv.getElementUtils().getBinaryName(type)).append('#')
+                .append(method.getSimpleName()).append('(');
+        for (int i = 0; i < parameters.size(); i++) {
+            VariableElement parameter = parameters.get(i);
+            List<Annotation> present = new ArrayList<Annotation>(2);
+            if (parameter.getAnnotation(LogExclude.class) != null) {
+                present.add(parameter.getAnnotation(LogExclude.class));
+            }
+            if (parameter.getAnnotation(LogLimit.class) != null) {
+                present.add(parameter.getAnnotation(LogLimit.class));
+            }
+            if (parameter.getAnnotation(LogFields.class) != null) {
+                present.add(parameter.getAnnotation(LogFields.class));
+            }
+            parameterAnnotations[i] = present.toArray(new Annotation[present.size()]);
+            if (i > 0) {
+                key.append(',');
+            }
+            key.append(typeName(parameter.asType()));
+        }
+        key.append(')');
+        String name = method.getSimpleName().toString();
+        LogPlan plan = messageCache.createPlan(logAnnotation, name, parameterAnnotations, method.getAnnotation(LogLimit.class),
+                method.getAnnotation(LogFields.class));
+
+        code.append("        method(").append(literal(key.toString())).append(", ").append(literal(name))
+                .append(", ").append(Severity.class.getName()).append('.').append(plan.getSeverity().name())
+                .append(", ").append(plan.isTimed()).append(", ").append(plan.getSampleRate())
+                .append(", ").append(plan.getMaxPerSecond()).append(", ").append(plan.isBatchScope())
+                .append(",\n                new String[]{");
+        MessageCache.MessageType[] types = MessageCache.MessageType.values();
+        for (int i = 0; i < types.length; i++) {
+            code.append(i > 0 ? ", " : "").append(literal(plan.getMessage(types[i])));
+        }
+        code.append("},\n                new int[]{");
+        int[] included = plan.getIncludedParameters();
+        for (int i = 0; i < included.length; i++) {
+            code.append(i > 0 ? ", " : "").append(included[i]);
+        }
+        code.append("}, ");
+        LazyArgument.Limit[] limits = plan.getLimits();
+        if (limits == null) {
+            code.append("null");
+        } else {
+            code.append("new int[][]{");
+            for (int i = 0; i < limits.length; i++) {
+                code.append(i > 0 ? ", " : "").append(limit(limits[i]));
+            }
+            code.append('}');
+        }
+        code.append(", ").append(plan.getReturnLimit() == null ? "null" : "new int[]" + limit(plan.getReturnLimit()))
+                .append(",\n                ");
+        if (limits == null) {
+            code.append("null");
+        } else {
+            code.append("new String[][]{");
+            for (int i = 0; i < limits.length; i++) {
+                code.append(i > 0 ? ", " : "").append(fields(limits[i]));
+            }
+            code.append('}');
+        }
+        code.append(", ").append(plan.getReturnLimit() == null ? "null" : "new String[]" + fields(plan.getReturnLimit()))
+                .append(");\n");
+    }
+
+    private void write(TypeElement topLevel, StringBuilder methods) {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(topLevel);
+        String simpleName = topLevel.getSimpleName() + LoggingIndex.SUFFIX;
+        String qualifiedName = pkg.isUnnamed() ? simpleName : pkg.getQualifiedName() + "." + simpleName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, topLevel).openWriter()) {
+            if (!pkg.isUnnamed()) {
+                writer.write("package " + pkg.getQualifiedName() + ";\n\n");
+            }
+            writer.write("/**\n * The logging plans of {@link " + topLevel.getSimpleName() + "}, generated by "
+                    + getClass().getName() + ".\n */\n");
+            writer.write("public final class " + simpleName + " extends " + LoggingIndex.class.getName() + " {\n\n");
+            writer.write("    public " + simpleName + "() {\n");
+            writer.write(methods.toString());
+            writer.write("    }\n}\n");
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Could not write the logging index " + qualifiedName + ": " + e.getMessage(), topLevel);
+        }
+    }
+
+    /**
+     * Writes the weaver configuration including the types with logged methods
+     * only.
+     */
+    private void writeAopXml() {
+        try (Writer writer = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", AOP_XML).openWriter()) {
+            writer.write("<!DOCTYPE aspectj PUBLIC \"-//AspectJ//DTD//EN\" \"http://www.eclipse.org/aspectj/dtd/aspectj.dtd\">\n");
+            writer.write("<!-- Generated by " + getClass().getName() + " -->\n");
+            writer.write("<aspectj>\n    <weaver>\n");
+            for (String type : wovenTypes) {
+                writer.write("        <include within=\"" + type + "\"/>\n");
+            }
+            writer.write("    </weaver>\n</aspectj>\n");
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Could not write the weaver configuration " + AOP_XML + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The name of the erasure of a type, as returned by
+     * {@link Class#getTypeName()}.
+     */
+    private String typeName(TypeMirror type) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        if (erased.getKind() == TypeKind.ARRAY) {
+            return typeName(((ArrayType) erased).getComponentType()) + "[]";
+        }
+        if (erased.getKind() == TypeKind.DECLARED) {
+            return processingEnv.getElementUtils().getBinaryName((TypeElement) ((DeclaredType) erased).asElement()).toString();
+        }
+        return erased.toString();
+    }
+
+    private static String limit(LazyArgument.Limit limit) {
+        return limit == null ? "null" : "{" + limit.elements + ", " + limit.length + "}";
+    }
+
+    private static String fields(LazyArgument.Limit limit) {
+        if (limit == null || limit.fields == null) {
+            return "null";
+        }
+        StringBuilder fields = new StringBuilder("{");
+        for (int i = 0; i < limit.fields.names.length; i++) {
+            fields.append(i > 0 ? ", " : "").append(literal(limit.fields.names[i]));
+        }
+        return fields.append('}').toString();
+    }
+
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                case '\t':
+                    literal.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
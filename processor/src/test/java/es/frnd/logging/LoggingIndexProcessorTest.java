@@ -0,0 +1,185 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import es.frnd.logging.MessageCache.MessageType;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+import org.slf4j.Logger;
+
+/**
+ * Compiles a sample class with {@link LoggingIndexProcessor} and checks the
+ * generated index against the plans built with reflection.
+ *
+ * @author fernando
+ */
+public class LoggingIndexProcessorTest {
+
+    private static final String SOURCE = "package sample;\n"
+            + "import es.frnd.logging.*;\n"
+            + "import java.util.List;\n"
+            + "public class Service {\n"
+            + "    @Logging(severity = Severity.INFO, timed = true)\n"
+            + "    public String find(String id, @LogExclude String password, @LogLimit(elements = 2) @LogFields({\"id\", \"status\"}) List<Object> values) {\n"
+            + "        return id;\n"
+            + "    }\n"
+            + "    @LogLimit(length = 3)\n"
+            + "    @LogFields(\"name\")\n"
+            + "    @Logging(enterText = \"Start \\\"{}\\\"\\n\", sampleRate = 4, maxPerSecond = 10, batchScope = true)\n"
+            + "    String limited() {\n"
+            + "        return \"limited\";\n"
+            + "    }\n"
+            + "    public void plain() {\n"
+            + "    }\n"
+            + "    @Logging(severity = Severity.WARN)\n"
+            + "    public static class Inner {\n"
+            + "        public <T extends Number> T[] convert(T[] values, int... more) {\n"
+            + "            return values;\n"
+            + "        }\n"
+            + "        private void hidden() {\n"
+            + "        }\n"
+            + "    }\n"
+            + "}\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of process method, of class LoggingIndexProcessor.
+     */
+    @Test
+    public void testProcess() throws Exception {
+        System.out.println("process");
+
+        File output = compile();
+        assertFalse(new File(output, LoggingIndexProcessor.AOP_XML).exists());
+        URLClassLoader loader = new URLClassLoader(new URL[]{output.toURI().toURL()}, getClass().getClassLoader());
+        Class<?> service = loader.loadClass("sample.Service");
+        Class<?> inner = loader.loadClass("sample.Service$Inner");
+
+        assertTrue(new File(output, "sample/Service" + LoggingIndex.SUFFIX + ".class").isFile());
+        assertIndexed(service.getDeclaredMethod("find", String.class, String.class, List.class));
+        assertIndexed(service.getDeclaredMethod("limited"));
+        assertIndexed(inner.getDeclaredMethod("convert", Number[].class, int[].class));
+        assertNull(LoggingIndex.of(service).plan(service.getDeclaredMethod("plain"), null));
+        assertNull(LoggingIndex.of(inner).plan(inner.getDeclaredMethod("hidden"), null));
+        assertNull(LoggingIndex.of(LoggingIndexProcessorTest.class).plan(getClass().getDeclaredMethod("testProcess"), null));
+        loader.close();
+    }
+
+    /**
+     * Test of process method with the weaver configuration option, of class
+     * LoggingIndexProcessor.
+     */
+    @Test
+    public void testProcessAopXml() throws Exception {
+        System.out.println("processAopXml");
+
+        File output = compile("-A" + LoggingIndexProcessor.AOP_XML_OPTION);
+
+        String aopXml = new String(Files.readAllBytes(new File(output, LoggingIndexProcessor.AOP_XML).toPath()),
+                StandardCharsets.UTF_8);
+        assertTrue(aopXml, aopXml.contains("<include within=\"sample.Service\"/>"));
+        assertTrue(aopXml, aopXml.contains("<include within=\"sample.Service$Inner\"/>"));
+        assertEquals(aopXml, 2, aopXml.split("<include ").length - 1);
+    }
+
+    private void assertIndexed(Method method) {
+        LogPlan indexed = LoggingIndex.of(method.getDeclaringClass()).plan(method, null);
+        assertNotNull(method.toString(), indexed);
+        LogPlan reflected = new MessageCache(new LogRegistry()).createPlan(MessageCache.findLogging(method),
+                method.getName(), method.getParameterAnnotations(), method.getAnnotation(LogLimit.class),
+                method.getAnnotation(LogFields.class));
+        assertEquals(reflected.getMethodName(), indexed.getMethodName());
+        assertEquals(reflected.getSeverity(), indexed.getSeverity());
+        assertEquals(reflected.isTimed(), indexed.isTimed());
+        assertEquals(reflected.getSampleRate(), indexed.getSampleRate());
+        assertEquals(reflected.getMaxPerSecond(), indexed.getMaxPerSecond());
+        assertEquals(reflected.isBatchScope(), indexed.isBatchScope());
+        for (MessageType type : MessageType.values()) {
+            assertEquals(reflected.getMessage(type), indexed.getMessage(type));
+        }
+        assertArrayEquals(reflected.getIncludedParameters(), indexed.getIncludedParameters());
+        assertEquals(limits(reflected.getLimits()), limits(indexed.getLimits()));
+        assertEquals(limits(new LazyArgument.Limit[]{reflected.getReturnLimit()}),
+                limits(new LazyArgument.Limit[]{indexed.getReturnLimit()}));
+    }
+
+    private static String limits(LazyArgument.Limit[] limits) {
+        if (limits == null) {
+            return "null";
+        }
+        StringBuilder result = new StringBuilder();
+        for (LazyArgument.Limit limit : limits) {
+            result.append(limit == null ? "none" : limit.elements + "/" + limit.length).append(' ');
+            if (limit != null && limit.fields != null) {
+                result.append(Arrays.toString(limit.fields.names)).append(' ');
+            }
+        }
+        return result.toString();
+    }
+
+    private File compile(String... options) throws IOException {
+        File sources = folder.newFolder("sources");
+        File output = folder.newFolder("classes");
+        File source = new File(sources, "Service.java");
+        Files.write(source.toPath(), SOURCE.getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        String classPath = location(Logging.class) + File.pathSeparator + location(Logger.class);
+        Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects(source);
+        List<String> arguments = new ArrayList<String>(Arrays.asList(options));
+        arguments.addAll(Arrays.asList("-classpath", classPath, "-d", output.getPath(), "-s", sources.getPath()));
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, arguments, null, units);
+        task.setProcessors(Arrays.asList(new LoggingIndexProcessor()));
+        assertTrue(task.call());
+        fileManager.close();
+        return output;
+    }
+
+    private static String location(Class<?> type) {
+        try {
+            return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
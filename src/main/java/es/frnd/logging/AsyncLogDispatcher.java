@@ -0,0 +1,404 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+
+/**
+ * Emits the messages on a dedicated thread, so slow appenders do not delay the
+ * advised methods.
+ *
+ * The calling thread stores the message in a bounded ring buffer whose slots
+ * are allocated up front and reused, and a single consumer thread takes them
+ * out and emits them. Producers and the consumer only synchronize through the
+ * sequence number of each slot and two counters, so no lock is taken. When the
+ * buffer is full the {@link BackPressure} policy decides what happens.
+ *
+ * The message arguments are rendered by the consumer thread, so they should
+ * not be modified after the advised method returns. A message whose emit
+ * throws is counted by {@link #getFailureCount()} and the consumer goes on
+ * with the next one.
+ *
+ * {@link #shutdown()} stops the consumer after emitting everything still in the
+ * buffer. It is also registered as a JVM shutdown hook.
+ *
+ * @author fernando
+ */
+public class AsyncLogDispatcher implements LogDispatcher {
+
+    /**
+     * What to do with a message when the buffer is full.
+     */
+    public enum BackPressure {
+
+        /**
+         * Wait until the consumer makes room for the message.
+         */
+        BLOCK,
+        /**
+         * Discard the oldest message in the buffer to make room.
+         */
+        DROP_OLDEST,
+        /**
+         * Discard the message.
+         */
+        DROP
+    }
+
+    /**
+     * The shapes of the template values stored in a slot.
+     */
+    private static final int ARRAY = 0;
+    private static final int ONE = 1;
+    private static final int TWO = 2;
+    private static final int ONE_AND_LONG = 3;
+    private static final int TWO_AND_LONG = 4;
+    private static final int TWO_LONG_AND_EXCEPTION = 5;
+    private static final int SPAN_TWO_AND_LONG = 6;
+    private static final int SPAN_TWO_LONG_AND_EXCEPTION = 7;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long BLOCKED_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final BackPressure backPressure;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final Thread consumer;
+    private final Thread shutdownHook;
+    private volatile boolean running = true;
+
+    /**
+     * Creates the dispatcher and starts its consumer thread.
+     *
+     * @param capacity the number of messages the buffer can hold, rounded up to
+     * a power of two.
+     * @param backPressure what to do when the buffer is full.
+     */
+    public AsyncLogDispatcher(int capacity, BackPressure backPressure) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("The capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot(i);
+        }
+        this.mask = size - 1;
+        this.backPressure = backPressure;
+        this.consumer = new Thread(this::consume, "logging-annotation-async");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+        this.shutdownHook = new Thread(this::shutdown, "logging-annotation-async-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    @Override
+    public void dispatch(Severity severity, Logger logger, MessageTemplate message, Object argument) {
+        dispatch(severity, logger, message, ONE, null, argument, null, 0L, null, null);
+    }
+
+    @Override
+    public void dispatch(Severity severity, Logger logger, MessageTemplate message, Object first, Object second) {
+        dispatch(severity, logger, message, TWO, null, first, second, 0L, null, null);
+    }
+
+    @Override
+    public void dispatch(Severity severity, Logger logger, MessageTemplate message, Object[] arguments) {
+        dispatch(severity, logger, message, ARRAY, null, null, null, 0L, null, arguments);
+    }
+
+    /**
+     * Stores the primitive value unboxed, it is boxed by the consumer thread.
+     */
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, Object first, long second) {
+        dispatch(severity, logger, message, ONE_AND_LONG, null, first, null, second, null, null);
+    }
+
+    /**
+     * Stores the primitive value unboxed, it is boxed by the consumer thread.
+     */
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, Object first, Object second, long third) {
+        dispatch(severity, logger, message, TWO_AND_LONG, null, first, second, third, null, null);
+    }
+
+    /**
+     * Stores the primitive value unboxed, it is boxed by the consumer thread.
+     */
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, Object first, Object second, long third,
+            Throwable exception) {
+        dispatch(severity, logger, message, TWO_LONG_AND_EXCEPTION, null, first, second, third, exception, null);
+    }
+
+    /**
+     * Stores the primitive value unboxed, it is boxed by the consumer thread.
+     */
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, CallSpan span, Object first,
+            Object second, long third) {
+        dispatch(severity, logger, message, SPAN_TWO_AND_LONG, span, first, second, third, null, null);
+    }
+
+    /**
+     * Stores the primitive value unboxed, it is boxed by the consumer thread.
+     */
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, CallSpan span, Object first,
+            Object second, long third, Throwable exception) {
+        dispatch(severity, logger, message, SPAN_TWO_LONG_AND_EXCEPTION, span, first, second, third, exception, null);
+    }
+
+    /**
+     * @return the number of messages discarded because the buffer was full.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return the number of messages whose emit failed, for example because
+     * an appender or a <code>toString()</code> threw.
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * @return the back pressure policy.
+     */
+    public BackPressure getBackPressure() {
+        return backPressure;
+    }
+
+    /**
+     * Stops the consumer thread after emitting every message in the buffer.
+     * Messages dispatched afterwards are emitted on the calling thread.
+     */
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // the JVM is already shutting down
+            }
+        }
+    }
+
+    private void dispatch(Severity severity, Logger logger, MessageTemplate message, int arity, CallSpan span, Object first, Object second, long primitive, Throwable exception, Object[] arguments) {
+        if (!running) {
+            emit(severity, logger, message, arity, span, first, second, primitive, exception, arguments);
+            return;
+        }
+        while (!offer(severity, logger, message, arity, span, first, second, primitive, exception, arguments)) {
+            switch (backPressure) {
+                case BLOCK:
+                    if (!running) {
+                        emit(severity, logger, message, arity, span, first, second, primitive, exception, arguments);
+                        return;
+                    }
+                    LockSupport.parkNanos(this, BLOCKED_NANOS);
+                    break;
+                case DROP_OLDEST:
+                    if (poll(false)) {
+                        dropped.increment();
+                    }
+                    break;
+                default:
+                    dropped.increment();
+                    return;
+            }
+        }
+        if (!running) {
+            // the consumer may have finished before the message was stored
+            drain();
+        }
+    }
+
+    private boolean offer(Severity severity, Logger logger, MessageTemplate message, int arity, CallSpan span, Object first, Object second, long primitive, Throwable exception, Object[] arguments) {
+        for (;;) {
+            long position = tail.get();
+            Slot slot = slots[(int) position & mask];
+            long difference = slot.sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slot.severity = severity;
+                    slot.logger = logger;
+                    slot.message = message;
+                    slot.arity = arity;
+                    slot.span = span;
+                    slot.first = first;
+                    slot.second = second;
+                    slot.primitive = primitive;
+                    slot.exception = exception;
+                    slot.arguments = arguments;
+                    slot.sequence = position + 1;
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Takes the oldest message out of the buffer.
+     *
+     * @param emit true to emit the message, false to discard it.
+     * @return false if the buffer was empty.
+     */
+    private boolean poll(boolean emit) {
+        for (;;) {
+            long position = head.get();
+            Slot slot = slots[(int) position & mask];
+            long difference = slot.sequence - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    Severity severity = slot.severity;
+                    Logger logger = slot.logger;
+                    MessageTemplate message = slot.message;
+                    int arity = slot.arity;
+                    CallSpan span = slot.span;
+                    Object first = slot.first;
+                    Object second = slot.second;
+                    long primitive = slot.primitive;
+                    Throwable exception = slot.exception;
+                    Object[] arguments = slot.arguments;
+                    slot.clear();
+                    slot.sequence = position + mask + 1;
+                    if (emit) {
+                        emit(severity, logger, message, arity, span, first, second, primitive, exception, arguments);
+                    }
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    private void drain() {
+        while (poll(true)) {
+            // emit everything left
+        }
+    }
+
+    private void consume() {
+        while (running) {
+            if (!poll(true)) {
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+        }
+        drain();
+    }
+
+    private void emit(Severity severity, Logger logger, MessageTemplate message, int arity, CallSpan span, Object first, Object second, long primitive, Throwable exception, Object[] arguments) {
+        try {
+            switch (arity) {
+                case ONE:
+                    severity.emit(logger, message.getPattern(), first);
+                    break;
+                case TWO:
+                    severity.emit(logger, message.getPattern(), first, second);
+                    break;
+                case ONE_AND_LONG:
+                    severity.emit(logger, message.getPattern(), first, primitive);
+                    break;
+                case TWO_AND_LONG:
+                    severity.emit(logger, message.getPattern(), new Object[]{first, second, primitive});
+                    break;
+                case TWO_LONG_AND_EXCEPTION:
+                    severity.emit(logger, message.getPattern(), new Object[]{first, second, primitive, exception});
+                    break;
+                case SPAN_TWO_AND_LONG:
+                    severity.emit(logger, message.getPattern(), new Object[]{span, first, second, primitive});
+                    break;
+                case SPAN_TWO_LONG_AND_EXCEPTION:
+                    severity.emit(logger, message.getPattern(), new Object[]{span, first, second, primitive, exception});
+                    break;
+                default:
+                    severity.emit(logger, message.getPattern(), arguments);
+            }
+        } catch (Throwable e) {
+            // a failing appender must not stop the consumer thread
+            failures.increment();
+        }
+    }
+
+    /**
+     * A reusable entry of the ring buffer. The fields are published by the
+     * write of the sequence number.
+     */
+    private static final class Slot {
+
+        volatile long sequence;
+        Severity severity;
+        Logger logger;
+        MessageTemplate message;
+        int arity;
+        CallSpan span;
+        Object first;
+        Object second;
+        long primitive;
+        Throwable exception;
+        Object[] arguments;
+
+        Slot(long sequence) {
+            this.sequence = sequence;
+        }
+
+        void clear() {
+            severity = null;
+            logger = null;
+            message = null;
+            span = null;
+            first = null;
+            second = null;
+            exception = null;
+            arguments = null;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+
+/**
+ * A {@link LogDispatcher} that formats the messages on the calling thread and
+ * holds them in a batch kept by the thread, to hand them to the backend
+ * together. Consecutive messages of the same logger and severity are emitted
+ * as a single event with one line per message, so the appender is locked and
+ * written once for all of them. A message with an exception is emitted on its
+ * own.
+ *
+ * A batch is flushed when it is full, when its oldest message has waited for
+ * about the maximum delay, when {@link #flush()} is called on its thread or a
+ * {@link Logging#batchScope() batch scope} method ends, and on
+ * {@link #shutdown()}, which also runs when the JVM exits. Messages logged
+ * while a batch is being emitted, for example by an appender, and after the
+ * shutdown are emitted at once.
+ *
+ * @author fernando
+ */
+public class BatchingLogDispatcher implements LogDispatcher {
+
+    /**
+     * The shortest period of the timer, so a delay of a few nanoseconds does
+     * not keep it spinning.
+     */
+    private static final long MIN_PERIOD = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int batchSize;
+    private final long maxDelay;
+    /**
+     * Every batch not yet flushed by the timer after its thread ended.
+     */
+    private final Set<Batch> batches = ConcurrentHashMap.newKeySet();
+    /**
+     * The batch of each thread, created by its first message.
+     */
+    private final ThreadLocal<Batch> batch = new ThreadLocal<Batch>();
+    private final ScheduledExecutorService timer;
+    private final Thread shutdownHook;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a dispatcher that emits up to 64 messages together and holds
+     * them back for up to 100 ms.
+     */
+    public BatchingLogDispatcher() {
+        this(64, 100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param batchSize the maximum number of messages emitted together.
+     * @param maxDelay the time a message can be held back. The batches are
+     * checked at least every millisecond, so a shorter delay can be exceeded.
+     * @param unit the unit of the delay.
+     * @throws IllegalArgumentException if the batch size or the delay are not
+     * positive.
+     */
+    public BatchingLogDispatcher(int batchSize, long maxDelay, TimeUnit unit) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+        }
+        if (maxDelay < 1) {
+            throw new IllegalArgumentException("The maximum delay must be positive: " + maxDelay);
+        }
+        this.batchSize = batchSize;
+        this.maxDelay = unit.toNanos(maxDelay);
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "logging-annotation-batch-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(MIN_PERIOD, this.maxDelay / 2);
+        timer.scheduleWithFixedDelay(this::flushExpired, period, period, TimeUnit.NANOSECONDS);
+        this.shutdownHook = new Thread(this::shutdown, "logging-annotation-batch-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    @Override
+    public void dispatch(Severity severity, Logger logger, MessageTemplate template, Object argument) {
+        if (severity.isEnabled(logger)) {
+            add(severity, logger, template.format(argument), throwable(template, 1, argument));
+        }
+    }
+
+    @Override
+    public void dispatch(Severity severity, Logger logger, MessageTemplate template, Object first, Object second) {
+        if (severity.isEnabled(logger)) {
+            add(severity, logger, template.format(first, second), throwable(template, 2, second));
+        }
+    }
+
+    @Override
+    public void dispatch(Severity severity, Logger logger, MessageTemplate template, Object[] arguments) {
+        if (severity.isEnabled(logger)) {
+            Object last = arguments.length == 0 ? null : arguments[arguments.length - 1];
+            add(severity, logger, template.format(arguments), throwable(template, arguments.length, last));
+        }
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate template, Object first, long second) {
+        if (severity.isEnabled(logger)) {
+            add(severity, logger, template.formatLong(first, second), null);
+        }
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate template, Object first, Object second, long third) {
+        if (severity.isEnabled(logger)) {
+            add(severity, logger, template.formatLong(first, second, third), null);
+        }
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate template, Object first, Object second, long third,
+            Throwable exception) {
+        if (severity.isEnabled(logger)) {
+            add(severity, logger, template.formatLong(first, second, third), throwable(template, 4, exception));
+        }
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate template, CallSpan span, Object first,
+            Object second, long third) {
+        if (severity.isEnabled(logger)) {
+            add(severity, logger, template.formatLong(span, first, second, third), null);
+        }
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate template, CallSpan span, Object first,
+            Object second, long third, Throwable exception) {
+        if (severity.isEnabled(logger)) {
+            add(severity, logger, template.formatLong(span, first, second, third), throwable(template, 5, exception));
+        }
+    }
+
+    @Override
+    public void endBatch() {
+        flush();
+    }
+
+    /**
+     * Emits the messages held for the calling thread.
+     */
+    public void flush() {
+        Batch current = batch.get();
+        if (current == null) {
+            return;
+        }
+        synchronized (current) {
+            current.emit();
+        }
+    }
+
+    /**
+     * Stops the timer and emits the messages held for every thread. Messages
+     * dispatched afterwards are emitted at once.
+     */
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        timer.shutdown();
+        for (Batch each : batches) {
+            synchronized (each) {
+                each.emit();
+            }
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // the JVM is already shutting down
+            }
+        }
+    }
+
+    private void add(Severity severity, Logger logger, String text, Throwable throwable) {
+        Batch current = batch.get();
+        if (current == null) {
+            current = new Batch(Thread.currentThread(), batchSize);
+            batch.set(current);
+            batches.add(current);
+        }
+        synchronized (current) {
+            // the lock is reentrant, an appender logging during the emit must
+            // not touch the batch
+            if (current.emitting || !running) {
+                Batch.emit(severity, logger, text, throwable);
+            } else if (current.add(severity, logger, text, throwable)) {
+                current.emit();
+            }
+        }
+    }
+
+    /**
+     * Emits the batches whose oldest message has waited for the maximum delay,
+     * and forgets those of the threads that ended.
+     */
+    private void flushExpired() {
+        long now = System.nanoTime();
+        for (Iterator<Batch> i = batches.iterator(); i.hasNext();) {
+            Batch each = i.next();
+            boolean ended = !each.owner.isAlive();
+            synchronized (each) {
+                if (each.size > 0 && (ended || now - each.since >= maxDelay)) {
+                    each.emit();
+                }
+            }
+            if (ended) {
+                i.remove();
+            }
+        }
+    }
+
+    private static Throwable throwable(MessageTemplate template, int count, Object last) {
+        return template.getSlots() < count && last instanceof Throwable ? (Throwable) last : null;
+    }
+
+    /**
+     * The messages held for a thread, guarded by the batch itself.
+     */
+    private static final class Batch {
+
+        final Thread owner;
+        final Severity[] severities;
+        final Logger[] loggers;
+        final String[] texts;
+        final Throwable[] throwables;
+        final StringBuilder buffer = new StringBuilder();
+        int size;
+        long since;
+        boolean emitting;
+
+        Batch(Thread owner, int capacity) {
+            this.owner = owner;
+            severities = new Severity[capacity];
+            loggers = new Logger[capacity];
+            texts = new String[capacity];
+            throwables = new Throwable[capacity];
+        }
+
+        /**
+         * @return true if the batch is full.
+         */
+        boolean add(Severity severity, Logger logger, String text, Throwable throwable) {
+            if (size == 0) {
+                since = System.nanoTime();
+            }
+            severities[size] = severity;
+            loggers[size] = logger;
+            texts[size] = text;
+            throwables[size] = throwable;
+            return ++size == texts.length;
+        }
+
+        void emit() {
+            if (emitting) {
+                return;
+            }
+            emitting = true;
+            try {
+                int start = 0;
+                for (int i = 1; i <= size; i++) {
+                    if (i == size || throwables[i - 1] != null || throwables[i] != null
+                            || severities[i] != severities[start] || loggers[i] != loggers[start]) {
+                        emit(start, i);
+                        start = i;
+                    }
+                }
+            } finally {
+                for (int i = 0; i < size; i++) {
+                    loggers[i] = null;
+                    texts[i] = null;
+                    throwables[i] = null;
+                }
+                size = 0;
+                emitting = false;
+            }
+        }
+
+        static void emit(Severity severity, Logger logger, String text, Throwable throwable) {
+            if (throwable != null) {
+                severity.emit(logger, text, throwable);
+            } else {
+                severity.emit(logger, text);
+            }
+        }
+
+        private void emit(int start, int end) {
+            if (end - start == 1) {
+                emit(severities[start], loggers[start], texts[start], throwables[start]);
+            } else {
+                buffer.setLength(0);
+                buffer.append(texts[start]);
+                for (int i = start + 1; i < end; i++) {
+                    buffer.append(System.lineSeparator()).append(texts[i]);
+                }
+                severities[start].emit(loggers[start], buffer.toString());
+                if (buffer.capacity() > 16384) {
+                    buffer.setLength(0);
+                    buffer.trimToSize();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+
+/**
+ * A {@link LogDispatcher} that encodes every message as a compact binary
+ * record instead of formatting it, and writes it to an {@link EventSink}. The
+ * records are turned into text offline by {@link EventDecoder}.
+ *
+ * The logger name, the message template and the first template value, the
+ * method name, are written once to a string table and referred to by id.
+ * Boxed primitives and strings are written with their type, other values as
+ * their <code>toString()</code>, and exceptions as their class and message.
+ * The text of the values is rendered before the record is written, so a
+ * <code>toString()</code> that logs does not overwrite it, and one that fails
+ * is written as <code>[FAILED toString()]</code>. The records that can not be
+ * written to the sink are counted, see {@link #getFailureCount()}.
+ *
+ * @author fernando
+ */
+public final class BinaryLogDispatcher implements LogDispatcher, Closeable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int INITIAL_CAPACITY = 256;
+    private static final String FAILED = "[FAILED toString()]";
+
+    private final EventSink sink;
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+    private int nextId;
+    private final LongAdder failures = new LongAdder();
+    private final ThreadLocal<ByteBuffer[]> buffers = new ThreadLocal<ByteBuffer[]>() {
+        @Override
+        protected ByteBuffer[] initialValue() {
+            return new ByteBuffer[]{ByteBuffer.allocate(INITIAL_CAPACITY)};
+        }
+    };
+
+    /**
+     * Writes the header to the sink.
+     *
+     * @param sink where the records are written.
+     * @throws IOException if the header can not be written.
+     */
+    public BinaryLogDispatcher(EventSink sink) throws IOException {
+        this.sink = sink;
+        ByteBuffer header = ByteBuffer.allocate(21);
+        header.putInt(EventFormat.MAGIC).put(EventFormat.VERSION);
+        header.putLong(System.currentTimeMillis()).putLong(System.nanoTime());
+        header.flip();
+        sink.write(header);
+    }
+
+    @Override
+    public void dispatch(Severity severity, Logger logger, MessageTemplate message, Object argument) {
+        argument = render(argument);
+        ByteBuffer[] holder = buffers.get();
+        ByteBuffer buffer = begin(holder, severity, logger, message, 1);
+        buffer = putFirst(holder, buffer, argument);
+        write(buffer);
+    }
+
+    @Override
+    public void dispatch(Severity severity, Logger logger, MessageTemplate message, Object first, Object second) {
+        first = render(first);
+        second = render(second);
+        ByteBuffer[] holder = buffers.get();
+        ByteBuffer buffer = begin(holder, severity, logger, message, 2);
+        buffer = putFirst(holder, buffer, first);
+        buffer = putValue(holder, buffer, second);
+        write(buffer);
+    }
+
+    @Override
+    public void dispatch(Severity severity, Logger logger, MessageTemplate message, Object[] arguments) {
+        arguments = render(arguments);
+        ByteBuffer[] holder = buffers.get();
+        ByteBuffer buffer = begin(holder, severity, logger, message, arguments.length);
+        for (int i = 0; i < arguments.length; i++) {
+            buffer = i == 0 ? putFirst(holder, buffer, arguments[i]) : putValue(holder, buffer, arguments[i]);
+        }
+        write(buffer);
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, Object first, long second) {
+        first = render(first);
+        ByteBuffer[] holder = buffers.get();
+        ByteBuffer buffer = begin(holder, severity, logger, message, 2);
+        buffer = putFirst(holder, buffer, first);
+        buffer = ensure(holder, buffer, 9).put(EventFormat.LONG).putLong(second);
+        write(buffer);
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, Object first, Object second, long third) {
+        first = render(first);
+        second = render(second);
+        ByteBuffer[] holder = buffers.get();
+        ByteBuffer buffer = begin(holder, severity, logger, message, 3);
+        buffer = putFirst(holder, buffer, first);
+        buffer = putValue(holder, buffer, second);
+        buffer = ensure(holder, buffer, 9).put(EventFormat.LONG).putLong(third);
+        write(buffer);
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, Object first, Object second, long third,
+            Throwable exception) {
+        first = render(first);
+        second = render(second);
+        Object rendered = render(exception);
+        ByteBuffer[] holder = buffers.get();
+        ByteBuffer buffer = begin(holder, severity, logger, message, 4);
+        buffer = putFirst(holder, buffer, first);
+        buffer = putValue(holder, buffer, second);
+        buffer = ensure(holder, buffer, 9).put(EventFormat.LONG).putLong(third);
+        buffer = putValue(holder, buffer, rendered);
+        write(buffer);
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, CallSpan span, Object first,
+            Object second, long third) {
+        Object renderedSpan = render(span);
+        first = render(first);
+        second = render(second);
+        ByteBuffer[] holder = buffers.get();
+        ByteBuffer buffer = begin(holder, severity, logger, message, 4);
+        buffer = putFirst(holder, buffer, renderedSpan);
+        buffer = putValue(holder, buffer, first);
+        buffer = putValue(holder, buffer, second);
+        buffer = ensure(holder, buffer, 9).put(EventFormat.LONG).putLong(third);
+        write(buffer);
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, CallSpan span, Object first,
+            Object second, long third, Throwable exception) {
+        Object renderedSpan = render(span);
+        first = render(first);
+        second = render(second);
+        Object rendered = render(exception);
+        ByteBuffer[] holder = buffers.get();
+        ByteBuffer buffer = begin(holder, severity, logger, message, 5);
+        buffer = putFirst(holder, buffer, renderedSpan);
+        buffer = putValue(holder, buffer, first);
+        buffer = putValue(holder, buffer, second);
+        buffer = ensure(holder, buffer, 9).put(EventFormat.LONG).putLong(third);
+        buffer = putValue(holder, buffer, rendered);
+        write(buffer);
+    }
+
+    /**
+     * @return the number of records and strings that could not be written to
+     * the sink.
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * Forces the records written so far to the storage.
+     *
+     * @throws IOException if the sink can not be flushed.
+     */
+    public void flush() throws IOException {
+        sink.flush();
+    }
+
+    /**
+     * Closes the sink. Nothing can be dispatched afterwards.
+     *
+     * @throws IOException if the sink can not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        sink.close();
+    }
+
+    private ByteBuffer begin(ByteBuffer[] holder, Severity severity, Logger logger, MessageTemplate message, int count) {
+        final int loggerId = intern(logger.getName());
+        final int messageId = intern(message.getPattern());
+        ByteBuffer buffer = holder[0];
+        buffer.clear();
+        buffer.put(EventFormat.EVENT).put((byte) severity.ordinal());
+        buffer.putLong(System.nanoTime()).putLong(Thread.currentThread().getId());
+        buffer.putInt(loggerId).putInt(messageId).putShort((short) count);
+        return buffer;
+    }
+
+    private ByteBuffer putFirst(ByteBuffer[] holder, ByteBuffer buffer, Object value) {
+        if (value instanceof String) {
+            final int id = intern((String) value);
+            return ensure(holder, buffer, 5).put(EventFormat.INTERNED).putInt(id);
+        }
+        return putValue(holder, buffer, value);
+    }
+
+    private ByteBuffer putValue(ByteBuffer[] holder, ByteBuffer buffer, Object value) {
+        if (value == null) {
+            return ensure(holder, buffer, 1).put(EventFormat.NULL);
+        }
+        if (value instanceof Integer) {
+            return ensure(holder, buffer, 5).put(EventFormat.INT).putInt((Integer) value);
+        }
+        if (value instanceof Long) {
+            return ensure(holder, buffer, 9).put(EventFormat.LONG).putLong((Long) value);
+        }
+        if (value instanceof Boolean) {
+            return ensure(holder, buffer, 2).put(EventFormat.BOOLEAN).put((byte) ((Boolean) value ? 1 : 0));
+        }
+        if (value instanceof Double) {
+            return ensure(holder, buffer, 9).put(EventFormat.DOUBLE).putDouble((Double) value);
+        }
+        if (value instanceof Float) {
+            return ensure(holder, buffer, 5).put(EventFormat.FLOAT).putFloat((Float) value);
+        }
+        if (value instanceof Short) {
+            return ensure(holder, buffer, 3).put(EventFormat.SHORT).putShort((Short) value);
+        }
+        if (value instanceof Byte) {
+            return ensure(holder, buffer, 2).put(EventFormat.BYTE).put((Byte) value);
+        }
+        if (value instanceof Character) {
+            return ensure(holder, buffer, 3).put(EventFormat.CHAR).putChar((Character) value);
+        }
+        byte[] text;
+        if (value instanceof Rendered) {
+            Rendered rendered = (Rendered) value;
+            if (rendered.exceptionClass != null) {
+                final int id = intern(rendered.exceptionClass);
+                buffer = ensure(holder, buffer, 5).put(EventFormat.THROWABLE).putInt(id);
+                if (rendered.text == null) {
+                    return ensure(holder, buffer, 1).put(EventFormat.NULL);
+                }
+            }
+            text = rendered.text;
+        } else {
+            text = ((String) value).getBytes(UTF_8);
+        }
+        return ensure(holder, buffer, 5 + text.length).put(EventFormat.TEXT).putInt(text.length).put(text);
+    }
+
+    /**
+     * Renders the values that are written as text, so no code of the logged
+     * values runs while the buffer of the thread is being written.
+     *
+     * @param value a template value.
+     * @return the value itself if it is written with its type, or its
+     * {@link Rendered} text.
+     */
+    private static Object render(Object value) {
+        if (value == null || value instanceof String || value instanceof Integer || value instanceof Long
+                || value instanceof Boolean || value instanceof Double || value instanceof Float
+                || value instanceof Short || value instanceof Byte || value instanceof Character) {
+            return value;
+        }
+        if (value instanceof Throwable) {
+            String message;
+            try {
+                message = ((Throwable) value).getMessage();
+            } catch (Throwable t) {
+                message = FAILED;
+            }
+            return new Rendered(value.getClass().getName(), message == null ? null : message.getBytes(UTF_8));
+        }
+        String text;
+        try {
+            text = String.valueOf(value.toString());
+        } catch (Throwable t) {
+            text = FAILED;
+        }
+        return new Rendered(null, text.getBytes(UTF_8));
+    }
+
+    /**
+     * Renders the values of an array, copying it only if any of them is
+     * rendered.
+     */
+    private static Object[] render(Object[] values) {
+        Object[] rendered = values;
+        for (int i = 0; i < values.length; i++) {
+            Object value = render(values[i]);
+            if (value != values[i]) {
+                if (rendered == values) {
+                    rendered = values.clone();
+                }
+                rendered[i] = value;
+            }
+        }
+        return rendered;
+    }
+
+    /**
+     * Returns a buffer with room for the given bytes, replacing the buffer of
+     * the thread with a bigger one if needed.
+     */
+    private static ByteBuffer ensure(ByteBuffer[] holder, ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        bigger.put(buffer);
+        holder[0] = bigger;
+        return bigger;
+    }
+
+    private void write(ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            sink.write(buffer);
+        } catch (IOException e) {
+            // the advised method must not fail because its log can not be written
+            failures.increment();
+        }
+    }
+
+    /**
+     * Returns the id of a string, writing it to the sink the first time so it
+     * always precedes the events that refer to it. The id is registered only
+     * once its record is written, so the next event writes it again.
+     *
+     * @return the id, or {@link EventFormat#UNDEFINED} if the string can not
+     * be written.
+     */
+    private int intern(String value) {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        synchronized (ids) {
+            id = ids.get(value);
+            if (id == null) {
+                byte[] text = value.getBytes(UTF_8);
+                ByteBuffer record = ByteBuffer.allocate(9 + text.length);
+                record.put(EventFormat.STRING).putInt(nextId).putInt(text.length).put(text);
+                record.flip();
+                try {
+                    sink.write(record);
+                } catch (IOException e) {
+                    failures.increment();
+                    return EventFormat.UNDEFINED;
+                }
+                id = nextId++;
+                ids.put(value, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * The text of a value written as text, or the class and message of an
+     * exception.
+     */
+    private static final class Rendered {
+
+        final String exceptionClass;
+        final byte[] text;
+
+        Rendered(String exceptionClass, byte[] text) {
+            this.exceptionClass = exceptionClass;
+            this.text = text;
+        }
+    }
+}
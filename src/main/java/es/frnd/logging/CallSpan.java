@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+/**
+ * Where a message was logged in a tree of nested advised calls: the trace,
+ * shared by every call under the outermost one, the span of the call, the span
+ * of the call that made it and the nesting depth.
+ *
+ * It is rendered as <code>[trace:parent:span]</code> followed by two spaces per
+ * nesting level, so the messages of a call tree can be grouped by trace and
+ * read indented.
+ *
+ * @author fernando
+ */
+public final class CallSpan {
+
+    private final long traceId;
+    private final long parentId;
+    private final long spanId;
+    private final int depth;
+
+    CallSpan(long traceId, long parentId, long spanId, int depth) {
+        this.traceId = traceId;
+        this.parentId = parentId;
+        this.spanId = spanId;
+        this.depth = depth;
+    }
+
+    /**
+     * @return the id of the outermost call.
+     */
+    public long getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * @return the id of the calling span, 0 for the outermost call.
+     */
+    public long getParentId() {
+        return parentId;
+    }
+
+    /**
+     * @return the id of the call.
+     */
+    public long getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * @return the nesting depth, 0 for the outermost call.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder(48 + 2 * depth);
+        buffer.append('[').append(Long.toHexString(traceId)).append(':').append(Long.toHexString(parentId))
+                .append(':').append(Long.toHexString(spanId)).append(']');
+        for (int i = 0; i < depth; i++) {
+            buffer.append("  ");
+        }
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The spans of the logged advised calls running on a thread, innermost last.
+ * The stack is kept by the thread and reused, so entering and leaving a call
+ * only writes a random id into an array that grows with the deepest nesting
+ * seen. The messages of a call that completes on another thread are logged
+ * with the span taken when it was called, {@link #resume(CallSpan) resumed}
+ * on that thread.
+ *
+ * @author fernando
+ */
+final class CallStack {
+
+    private static final ThreadLocal<CallStack> STACKS = new ThreadLocal<CallStack>() {
+        @Override
+        protected CallStack initialValue() {
+            return new CallStack();
+        }
+    };
+
+    private long[] spans = new long[16];
+    private int depth;
+    /**
+     * The span of a call made on another thread whose messages are being
+     * logged by this one, or null.
+     */
+    private CallSpan resumed;
+
+    private CallStack() {
+    }
+
+    /**
+     * Pushes a new span for a call on the current thread.
+     *
+     * @return the stack of the current thread, to {@link #exit()} it when
+     * the call ends.
+     */
+    static CallStack enter() {
+        CallStack stack = STACKS.get();
+        if (stack.depth == stack.spans.length) {
+            long[] bigger = new long[stack.spans.length * 2];
+            System.arraycopy(stack.spans, 0, bigger, 0, stack.depth);
+            stack.spans = bigger;
+        }
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0L);
+        stack.spans[stack.depth++] = id;
+        return stack;
+    }
+
+    /**
+     * Pops the span of the call that is ending.
+     */
+    void exit() {
+        if (depth > 0) {
+            depth--;
+        }
+    }
+
+    /**
+     * @return the span of the innermost logged call of the current thread, or
+     * null if there is none.
+     */
+    static CallSpan currentSpan() {
+        CallStack stack = STACKS.get();
+        if (stack.resumed != null) {
+            return stack.resumed;
+        }
+        final int depth = stack.depth;
+        if (depth == 0) {
+            return null;
+        }
+        long[] spans = stack.spans;
+        return new CallSpan(spans[0], depth > 1 ? spans[depth - 2] : 0L, spans[depth - 1], depth - 1);
+    }
+
+    /**
+     * Makes a span taken by {@link #currentSpan()}, possibly on another
+     * thread, the current span of this thread until it is
+     * {@link #restore(CallSpan) restored}.
+     *
+     * @param span the span of the call whose messages are logged.
+     * @return the span resumed before, to restore it.
+     */
+    static CallSpan resume(CallSpan span) {
+        CallStack stack = STACKS.get();
+        CallSpan previous = stack.resumed;
+        stack.resumed = span;
+        return previous;
+    }
+
+    /**
+     * Ends a {@link #resume(CallSpan) resumed} span.
+     *
+     * @param previous the span returned by {@link #resume(CallSpan)}.
+     */
+    static void restore(CallSpan previous) {
+        STACKS.get().resumed = previous;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import org.slf4j.Logger;
+
+/**
+ * Prefixes the messages logged inside an advised call with its
+ * {@link CallSpan}, and hands them to another dispatcher. The span is taken
+ * on the calling thread, so the delegate may emit the message later or on
+ * another thread.
+ *
+ * @author fernando
+ */
+public class CallTreeLogDispatcher implements LogDispatcher {
+
+    private final LogDispatcher delegate;
+
+    /**
+     * @param delegate the dispatcher the prefixed messages are handed to.
+     */
+    public CallTreeLogDispatcher(LogDispatcher delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return the dispatcher the prefixed messages are handed to.
+     */
+    public LogDispatcher getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void dispatch(Severity severity, Logger logger, MessageTemplate message, Object argument) {
+        CallSpan span = CallStack.currentSpan();
+        if (span == null) {
+            delegate.dispatch(severity, logger, message, argument);
+        } else {
+            delegate.dispatch(severity, logger, message.withSpan(), span, argument);
+        }
+    }
+
+    @Override
+    public void dispatch(Severity severity, Logger logger, MessageTemplate message, Object first, Object second) {
+        CallSpan span = CallStack.currentSpan();
+        if (span == null) {
+            delegate.dispatch(severity, logger, message, first, second);
+        } else {
+            delegate.dispatch(severity, logger, message.withSpan(), new Object[]{span, first, second});
+        }
+    }
+
+    @Override
+    public void dispatch(Severity severity, Logger logger, MessageTemplate message, Object[] arguments) {
+        CallSpan span = CallStack.currentSpan();
+        if (span == null) {
+            delegate.dispatch(severity, logger, message, arguments);
+        } else {
+            Object[] values = new Object[arguments.length + 1];
+            values[0] = span;
+            System.arraycopy(arguments, 0, values, 1, arguments.length);
+            delegate.dispatch(severity, logger, message.withSpan(), values);
+        }
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, Object first, long second) {
+        CallSpan span = CallStack.currentSpan();
+        if (span == null) {
+            delegate.dispatchLong(severity, logger, message, first, second);
+        } else {
+            delegate.dispatchLong(severity, logger, message.withSpan(), span, first, second);
+        }
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, Object first, Object second, long third) {
+        CallSpan span = CallStack.currentSpan();
+        if (span == null) {
+            delegate.dispatchLong(severity, logger, message, first, second, third);
+        } else {
+            delegate.dispatchLong(severity, logger, message.withSpan(), span, first, second, third);
+        }
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, Object first, Object second, long third,
+            Throwable exception) {
+        CallSpan span = CallStack.currentSpan();
+        if (span == null) {
+            delegate.dispatchLong(severity, logger, message, first, second, third, exception);
+        } else {
+            delegate.dispatchLong(severity, logger, message.withSpan(), span, first, second, third, exception);
+        }
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, CallSpan span, Object first,
+            Object second, long third) {
+        delegate.dispatchLong(severity, logger, message, span, first, second, third);
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, CallSpan span, Object first,
+            Object second, long third, Throwable exception) {
+        delegate.dispatchLong(severity, logger, message, span, first, second, third, exception);
+    }
+
+    @Override
+    public void endBatch() {
+        delegate.endBatch();
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * Turns the records written by {@link BinaryLogDispatcher} into text lines:
+ *
+ * <pre>
+ * 2013-05-04 10:20:30.123 DEBUG [thread 1] com.example.Service - Calling method save with args 42
+ * </pre>
+ *
+ * Run it with the file to decode, the lines are printed to the standard
+ * output:
+ *
+ * <pre>
+ * java -cp logging-annotation.jar:slf4j-api.jar es.frnd.logging.EventDecoder events.bin
+ * </pre>
+ *
+ * @author fernando
+ */
+public final class EventDecoder {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final List<String> strings = new ArrayList<String>();
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: EventDecoder <file>");
+            System.exit(1);
+        }
+        PrintWriter output = new PrintWriter(System.out);
+        new EventDecoder().decode(new File(args[0]), output);
+        output.flush();
+    }
+
+    /**
+     * Decodes a file written by a {@link MappedFileEventSink}.
+     *
+     * @param file the file to read.
+     * @param output where the lines are appended.
+     * @throws IOException if the file can not be read or is not an event file.
+     */
+    public void decode(File file, Appendable output) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), output);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Decodes the records between the position and the limit of a buffer. A
+     * last record cut short, by a process that stopped while writing it, is
+     * reported as a line of its own. The strings that could not be written
+     * are decoded as <code>[undefined string]</code>.
+     *
+     * @param input the records, starting with the header.
+     * @param output where the lines are appended.
+     * @throws IOException if the records are not valid or the output fails.
+     */
+    public void decode(ByteBuffer input, Appendable output) throws IOException {
+        if (input.remaining() < 21 || input.getInt() != EventFormat.MAGIC) {
+            throw new IOException("Not an event file");
+        }
+        final byte version = input.get();
+        if (version != EventFormat.VERSION) {
+            throw new IOException("Unsupported event file version " + version);
+        }
+        final long startMillis = input.getLong();
+        final long startNanos = input.getLong();
+        strings.clear();
+        while (input.hasRemaining()) {
+            final int start = input.position();
+            try {
+                if (!decodeRecord(input, output, startMillis, startNanos)) {
+                    return;
+                }
+            } catch (BufferUnderflowException e) {
+                output.append("[truncated record at ").append(String.valueOf(start)).append("]\n");
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return false if the record ends the records.
+     */
+    private boolean decodeRecord(ByteBuffer input, Appendable output, long startMillis, long startNanos)
+            throws IOException {
+        final byte type = input.get();
+        if (type == EventFormat.END) {
+            return false;
+        } else if (type == EventFormat.STRING) {
+            final int id = input.getInt();
+            if (id < 0) {
+                throw new IOException("Invalid string id " + id + " at " + (input.position() - 5));
+            }
+            while (strings.size() <= id) {
+                strings.add(null);
+            }
+            strings.set(id, getText(input));
+        } else if (type == EventFormat.EVENT) {
+            final Severity severity = Severity.values()[input.get()];
+            final long millis = startMillis + TimeUnit.NANOSECONDS.toMillis(input.getLong() - startNanos);
+            final long threadId = input.getLong();
+            final String logger = getString(input.getInt());
+            final String message = getString(input.getInt());
+            final Object[] values = new Object[input.getShort()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = getValue(input);
+            }
+            output.append(dateFormat.format(new Date(millis))).append(' ').append(severity.name())
+                    .append(" [thread ").append(String.valueOf(threadId)).append("] ").append(logger)
+                    .append(" - ").append(MessageFormatter.arrayFormat(message, values).getMessage())
+                    .append('\n');
+        } else {
+            throw new IOException("Unknown record type " + type + " at " + (input.position() - 1));
+        }
+        return true;
+    }
+
+    private Object getValue(ByteBuffer input) throws IOException {
+        final byte tag = input.get();
+        switch (tag) {
+            case EventFormat.NULL:
+                return null;
+            case EventFormat.BOOLEAN:
+                return input.get() != 0;
+            case EventFormat.BYTE:
+                return input.get();
+            case EventFormat.SHORT:
+                return input.getShort();
+            case EventFormat.CHAR:
+                return input.getChar();
+            case EventFormat.INT:
+                return input.getInt();
+            case EventFormat.LONG:
+                return input.getLong();
+            case EventFormat.FLOAT:
+                return input.getFloat();
+            case EventFormat.DOUBLE:
+                return input.getDouble();
+            case EventFormat.TEXT:
+                return getText(input);
+            case EventFormat.INTERNED:
+                return getString(input.getInt());
+            case EventFormat.THROWABLE:
+                final String className = getString(input.getInt());
+                final Object message = getValue(input);
+                return message == null ? className : className + ": " + message;
+            default:
+                throw new IOException("Unknown value type " + tag + " at " + (input.position() - 1));
+        }
+    }
+
+    private String getString(int id) {
+        final String value = id >= 0 && id < strings.size() ? strings.get(id) : null;
+        return value == null ? "[undefined string]" : value;
+    }
+
+    private static String getText(ByteBuffer input) throws IOException {
+        final int length = input.getInt();
+        if (length < 0) {
+            throw new IOException("Invalid text length " + length + " at " + (input.position() - 4));
+        }
+        if (length > input.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] text = new byte[length];
+        input.get(text);
+        return new String(text, UTF_8);
+    }
+}
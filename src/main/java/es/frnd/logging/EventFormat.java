@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+/**
+ * The layout of the records written by {@link BinaryLogDispatcher} and read by
+ * {@link EventDecoder}. All numbers are big endian.
+ *
+ * <pre>
+ * header: int MAGIC, byte VERSION, long currentTimeMillis, long nanoTime
+ * string: byte STRING, int id, int length, length bytes of UTF-8
+ * event:  byte EVENT, byte severity ordinal, long nanoTime, long thread id,
+ *         int logger name id, int message id, short count, count values
+ * value:  byte tag, then the value as written by the matching ByteBuffer put
+ * </pre>
+ *
+ * A string is always written before the first event that refers to its id,
+ * the events refer to a string that could not be written with the
+ * {@link #UNDEFINED} id. A zero byte, or the end of the file, ends the
+ * records.
+ *
+ * @author fernando
+ */
+final class EventFormat {
+
+    static final int MAGIC = 0x464C4F47;
+    static final byte VERSION = 1;
+
+    static final byte END = 0;
+    static final byte STRING = 1;
+    static final byte EVENT = 2;
+
+    /**
+     * The id of a string that could not be written.
+     */
+    static final int UNDEFINED = -1;
+
+    static final byte NULL = 0;
+    static final byte BOOLEAN = 1;
+    static final byte BYTE = 2;
+    static final byte SHORT = 3;
+    static final byte CHAR = 4;
+    static final byte INT = 5;
+    static final byte LONG = 6;
+    static final byte FLOAT = 7;
+    static final byte DOUBLE = 8;
+    /**
+     * A string written in place: int length and UTF-8 bytes.
+     */
+    static final byte TEXT = 9;
+    /**
+     * A string from the table: int id.
+     */
+    static final byte INTERNED = 10;
+    /**
+     * An exception: the interned id of its class name and its message as
+     * TEXT or NULL.
+     */
+    static final byte THROWABLE = 11;
+
+    private EventFormat() {
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which exceptions thrown by the advised methods are logged, so a
+ * failing dependency does not flood the log with the same stack trace.
+ *
+ * The exceptions are told apart by a fingerprint: the advised method, the
+ * exception class and the top frames of its stack trace. The first exception of
+ * a fingerprint is logged with its stack trace and opens a window; the repeats
+ * within the window are only counted, and reported in a one line summary
+ * before the first exception of the fingerprint after the window, which opens
+ * the next one. The repeats of a window that no exception follows are
+ * reported by a timer when the window ends, and by {@link #shutdown()}, which
+ * also runs when the JVM exits.
+ *
+ * An exception is only logged by the innermost advised method it is thrown
+ * through: the logged calls are counted by each thread between
+ * {@link #enter()} and {@link #exit()}, and the outer calls an exception
+ * propagates to on the same thread skip it. The same exception thrown again
+ * by another call, such as a preallocated one, is counted as any other.
+ *
+ * @author fernando
+ */
+public final class ExceptionDeduplicator {
+
+    static final MessageTemplate REPEATED = MessageTemplate.compile("Method {} threw {} {} more times");
+    /**
+     * The windows kept before they are all dropped, to bound the memory used
+     * by exceptions with changing stack traces.
+     */
+    private static final int MAX_WINDOWS = 1024;
+    private static final long MIN_PERIOD = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int frames;
+    private final long window;
+    private final ConcurrentMap<Fingerprint, Window> windows = new ConcurrentHashMap<Fingerprint, Window>();
+    /**
+     * The logged calls of each thread and the last exception seen by them, to
+     * recognize it when it propagates to an outer call.
+     */
+    private final ThreadLocal<Unwinding> unwinding = ThreadLocal.withInitial(Unwinding::new);
+    private final ScheduledExecutorService timer;
+    private final Thread shutdownHook;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a deduplicator of the exceptions with the same top 5 frames,
+     * with a window of one minute.
+     */
+    public ExceptionDeduplicator() {
+        this(5, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @param frames the number of frames of the stack trace in the fingerprint.
+     * @param window the time the repeats of an exception are only counted.
+     * @param unit the unit of the window.
+     */
+    public ExceptionDeduplicator(int frames, long window, TimeUnit unit) {
+        if (frames < 0) {
+            throw new IllegalArgumentException("The number of frames can not be negative: " + frames);
+        }
+        this.frames = frames;
+        this.window = unit.toNanos(window);
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "logging-annotation-exception-repeats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(MIN_PERIOD, this.window / 2);
+        timer.scheduleWithFixedDelay(this::reportExpired, period, period, TimeUnit.NANOSECONDS);
+        this.shutdownHook = new Thread(this::shutdown, "logging-annotation-exception-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Marks the start of a logged call on the current thread.
+     */
+    void enter() {
+        unwinding.get().depth++;
+    }
+
+    /**
+     * Marks the end of a logged call on the current thread. The last exception
+     * is forgotten when the outermost call ends.
+     */
+    void exit() {
+        Unwinding thread = unwinding.get();
+        if (thread.depth > 0 && --thread.depth == 0) {
+            thread.exception = null;
+        }
+    }
+
+    /**
+     * Counts an exception thrown by an advised method.
+     *
+     * @param metadata the advised method.
+     * @param exception the exception it throws.
+     * @param dispatcher the dispatcher the repeats are reported to if no
+     * exception follows them.
+     * @return the number of repeats of the exception to report before logging
+     * it, or -1 if it must not be logged.
+     */
+    long occurrence(JoinPointMetadata metadata, Throwable exception, LogDispatcher dispatcher) {
+        Unwinding thread = unwinding.get();
+        if (thread.exception == exception && thread.exceptionDepth > thread.depth) {
+            thread.exceptionDepth = thread.depth;
+            return -1L;
+        }
+        if (thread.depth > 0) {
+            thread.exception = exception;
+            thread.exceptionDepth = thread.depth;
+        }
+        Fingerprint fingerprint = new Fingerprint(metadata, exception, frames);
+        final long now = System.nanoTime();
+        for (;;) {
+            Window current = windows.get(fingerprint);
+            if (current == null) {
+                if (windows.size() >= MAX_WINDOWS) {
+                    reportAll(false);
+                }
+                current = windows.putIfAbsent(fingerprint.trim(), new Window(now, metadata, exception, dispatcher));
+                if (current == null) {
+                    return 0L;
+                }
+            }
+            final long start = current.get();
+            if (now - start < window || !current.compareAndSet(start, now)) {
+                if (current.repeat(dispatcher)) {
+                    return -1L;
+                }
+            } else {
+                final long repeats = current.take();
+                if (repeats >= 0) {
+                    return repeats;
+                }
+            }
+            // the window was retired meanwhile, the next one is opened
+        }
+    }
+
+    /**
+     * Stops the timer and reports the repeats counted so far.
+     */
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        timer.shutdown();
+        reportAll(true);
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // the JVM is already shutting down
+            }
+        }
+    }
+
+    /**
+     * Reports the repeats of the windows that ended, and forgets them.
+     */
+    private void reportExpired() {
+        final long now = System.nanoTime();
+        for (Map.Entry<Fingerprint, Window> each : windows.entrySet()) {
+            Window expired = each.getValue();
+            if (now - expired.get() >= window && windows.remove(each.getKey(), expired)) {
+                expired.close();
+            }
+        }
+    }
+
+    /**
+     * Reports the repeats of every window.
+     *
+     * @param keep true to keep the windows open, false to forget them.
+     */
+    private void reportAll(boolean keep) {
+        for (Map.Entry<Fingerprint, Window> each : windows.entrySet()) {
+            Window current = each.getValue();
+            if (keep) {
+                current.report();
+            } else if (windows.remove(each.getKey(), current)) {
+                current.close();
+            }
+        }
+    }
+
+    /**
+     * The logged calls of a thread, and the last exception seen by them with
+     * the depth of the call it was last seen by.
+     */
+    private static final class Unwinding {
+
+        int depth;
+        Throwable exception;
+        int exceptionDepth;
+    }
+
+    /**
+     * The start of the current window of a fingerprint and the repeats within
+     * it, with what is needed to report them. A window removed from the map is
+     * closed, and the repeats counted by the threads that still hold it are
+     * refused, so they count them in the next window instead.
+     */
+    private static final class Window extends AtomicLong {
+
+        private static final long serialVersionUID = 1L;
+        /**
+         * The repeats of a closed window, so negative whatever is added to it.
+         */
+        private static final long CLOSED = Long.MIN_VALUE;
+        private final AtomicLong repeats = new AtomicLong();
+        final JoinPointMetadata metadata;
+        final String type;
+        volatile LogDispatcher dispatcher;
+
+        Window(long start, JoinPointMetadata metadata, Throwable exception, LogDispatcher dispatcher) {
+            super(start);
+            this.metadata = metadata;
+            this.type = exception.getClass().getName();
+            this.dispatcher = dispatcher;
+        }
+
+        /**
+         * Counts a repeat.
+         *
+         * @param dispatcher the dispatcher the repeats are reported to.
+         * @return false if the window is closed, and the repeat not counted.
+         */
+        boolean repeat(LogDispatcher dispatcher) {
+            this.dispatcher = dispatcher;
+            return repeats.getAndIncrement() >= 0;
+        }
+
+        /**
+         * @return the repeats counted so far, starting over, or -1 if the
+         * window is closed.
+         */
+        long take() {
+            for (;;) {
+                final long count = repeats.get();
+                if (count < 0) {
+                    return -1L;
+                }
+                if (repeats.compareAndSet(count, 0L)) {
+                    return count;
+                }
+            }
+        }
+
+        /**
+         * Reports the repeats counted so far and keeps the window open.
+         */
+        void report() {
+            report(take());
+        }
+
+        /**
+         * Reports the repeats counted so far and closes the window.
+         */
+        void close() {
+            report(repeats.getAndSet(CLOSED));
+        }
+
+        private void report(long count) {
+            if (count > 0) {
+                metadata.logRepeats(dispatcher, type, count);
+            }
+        }
+    }
+
+    /**
+     * The advised method, the exception class and the top frames of the
+     * stack trace. The frames are read from the array returned by
+     * {@link Throwable#getStackTrace()} without copying them again; only the
+     * keys stored in the map are trimmed to the top frames.
+     */
+    private static final class Fingerprint {
+
+        private static final StackTraceElement[] NO_FRAMES = new StackTraceElement[0];
+        private final JoinPointMetadata metadata;
+        private final Class<?> type;
+        private final StackTraceElement[] trace;
+        private final int frames;
+        private final int hash;
+
+        Fingerprint(JoinPointMetadata metadata, Throwable exception, int frames) {
+            this.metadata = metadata;
+            this.type = exception.getClass();
+            this.trace = frames == 0 ? NO_FRAMES : exception.getStackTrace();
+            this.frames = Math.min(frames, trace.length);
+            int result = 31 * System.identityHashCode(metadata) + type.hashCode();
+            for (int i = 0; i < this.frames; i++) {
+                result = 31 * result + trace[i].hashCode();
+            }
+            this.hash = result;
+        }
+
+        private Fingerprint(Fingerprint other) {
+            this.metadata = other.metadata;
+            this.type = other.type;
+            this.trace = Arrays.copyOf(other.trace, other.frames);
+            this.frames = other.frames;
+            this.hash = other.hash;
+        }
+
+        /**
+         * @return this fingerprint without the frames below the top ones.
+         */
+        Fingerprint trim() {
+            return trace.length == frames ? this : new Fingerprint(this);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint other = (Fingerprint) obj;
+            if (metadata != other.metadata || type != other.type || frames != other.frames) {
+                return false;
+            }
+            for (int i = 0; i < frames; i++) {
+                if (!trace[i].equals(other.trace[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Renders some properties of a value, as listed by a {@link LogFields}
+ * annotation. The accessors of the properties are resolved into method
+ * handles once per class of the logged values.
+ *
+ * @author fernando
+ */
+final class FieldProjection {
+
+    private static final MethodType ACCESSOR = MethodType.methodType(Object.class, Object.class);
+    private static final String UNKNOWN = "?";
+
+    final String[] names;
+    private final ClassValue<MethodHandle[]> accessors = new ClassValue<MethodHandle[]>() {
+        @Override
+        protected MethodHandle[] computeValue(Class<?> type) {
+            MethodHandle[] result = new MethodHandle[names.length];
+            for (int i = 0; i < names.length; i++) {
+                result[i] = accessor(type, names[i]);
+            }
+            return result;
+        }
+    };
+
+    FieldProjection(String[] names) {
+        this.names = names;
+    }
+
+    /**
+     * @param value a logged value.
+     * @return the properties of the value, as <code>{a=1, b=2}</code>.
+     */
+    String render(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        MethodHandle[] handles = accessors.get(value.getClass());
+        StringBuilder buffer = new StringBuilder().append('{');
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(names[i]).append('=');
+            if (handles[i] == null) {
+                buffer.append(UNKNOWN);
+                continue;
+            }
+            try {
+                buffer.append(String.valueOf((Object) handles[i].invokeExact(value)));
+            } catch (Throwable e) {
+                buffer.append(UNKNOWN);
+            }
+        }
+        return buffer.append('}').toString();
+    }
+
+    /**
+     * Finds the field of the type, or of one of its super classes, with the
+     * given name, or else its accessor method.
+     *
+     * @return a handle taking the value and returning the property, or null if
+     * there is none or it can not be accessed.
+     */
+    private static MethodHandle accessor(Class<?> type, String name) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(name);
+                field.setAccessible(true);
+                return lookup.unreflectGetter(field).asType(ACCESSOR);
+            } catch (NoSuchFieldException e) {
+                // look in the super class
+            } catch (IllegalAccessException | RuntimeException e) {
+                break;
+            }
+        }
+        if (name.isEmpty()) {
+            return null;
+        }
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (String methodName : new String[]{"get" + capitalized, "is" + capitalized, name}) {
+            try {
+                Method method = type.getMethod(methodName);
+                if (method.getReturnType() != void.class) {
+                    method.setAccessible(true);
+                    return lookup.unreflect(method).asType(ACCESSOR);
+                }
+            } catch (NoSuchMethodException e) {
+                // try the next name
+            } catch (IllegalAccessException | RuntimeException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
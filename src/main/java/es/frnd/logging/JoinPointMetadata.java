@@ -0,0 +1,423 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import es.frnd.logging.MessageCache.MessageType;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import org.slf4j.Logger;
+
+/**
+ * What the advice needs to know about an advised method, resolved once on the
+ * first call and shared by the before, return and exception advices.
+ *
+ * @author fernando
+ */
+public final class JoinPointMetadata {
+
+    private final Method method;
+    private final Logger logger;
+    /**
+     * Read on first use when the plan comes from a {@link LoggingIndex}.
+     */
+    private Annotation[][] parameterAnnotations;
+    private final LogPlan plan;
+    private final LogThrottle throttle;
+    private final String name;
+    /**
+     * True if the method is declared to return a {@link CompletionStage}.
+     */
+    private final boolean async;
+    /**
+     * The severity the method is logged with, null when it is switched off.
+     * Starts as the annotation severity and is changed by {@link LogRegistry}.
+     */
+    private volatile Severity severity;
+    private volatile MethodStatistics statistics;
+    /**
+     * The dispatcher of the last logged call of a sampled or rate limited
+     * method, which the suppressed calls no logged call follows are reported
+     * to.
+     */
+    private volatile LogDispatcher dispatcher;
+
+    JoinPointMetadata(Method method, Logger logger, Annotation[][] parameterAnnotations, LogPlan plan) {
+        this.method = method;
+        this.logger = logger;
+        this.parameterAnnotations = parameterAnnotations;
+        this.plan = plan;
+        this.throttle = LogThrottle.create(plan);
+        this.name = method.getDeclaringClass().getName() + '.' + method.getName();
+        this.async = CompletionStage.class.isAssignableFrom(method.getReturnType());
+        this.severity = plan.getSeverity();
+    }
+
+    /**
+     * @return the advised method.
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return true if the method is declared to return a
+     * {@link CompletionStage}, whose completion is logged instead of the stage.
+     */
+    boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * @return the name of the advised method, as
+     * <code>package.Class.method</code>.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the severity the method is logged with, or null if its logging
+     * is switched off.
+     */
+    public Severity getEffectiveSeverity() {
+        return severity;
+    }
+
+    /**
+     * @param severity the severity to log the method with, or null to switch
+     * its logging off.
+     */
+    void setEffectiveSeverity(Severity severity) {
+        this.severity = severity;
+    }
+
+    /**
+     * @return the logger of the class declaring the advised method.
+     */
+    public Logger getLogger() {
+        return logger;
+    }
+
+    /**
+     * The annotations of the method parameters. The returned array is shared
+     * and must not be modified.
+     *
+     * @return the parameter annotations of the advised method.
+     */
+    Annotation[][] getParameterAnnotations() {
+        if (parameterAnnotations == null) {
+            parameterAnnotations = method.getParameterAnnotations();
+        }
+        return parameterAnnotations;
+    }
+
+    /**
+     * @return the log plan of the advised method.
+     */
+    public LogPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Returns the statistics of the method, creating them on the first call.
+     *
+     * @return the statistics of the method.
+     */
+    MethodStatistics getStatistics() {
+        MethodStatistics result = statistics;
+        if (result == null) {
+            synchronized (this) {
+                result = statistics;
+                if (result == null) {
+                    result = new MethodStatistics();
+                    statistics = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the statistics of the method, or null if nothing has been
+     * recorded.
+     */
+    MethodStatistics getRecordedStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return true if the method is switched on and its severity is enabled
+     * in its logger.
+     */
+    boolean isEnabled() {
+        final Severity severity = this.severity;
+        return severity != null && severity.isEnabled(logger);
+    }
+
+    /**
+     * Checks the sample rate and rate limit of the method. Must be called once
+     * per call, after {@link #isEnabled()}, to decide whether the call is
+     * logged.
+     *
+     * @return true if this call must be logged.
+     */
+    boolean tryAcquire() {
+        if (throttle == null || throttle.tryAcquire()) {
+            return true;
+        }
+        throttle.reportLater(this);
+        return false;
+    }
+
+    /**
+     * @return the number of calls not logged because of the sample rate or
+     * rate limit of the method.
+     */
+    long getSuppressedCount() {
+        return throttle == null ? 0L : throttle.getSuppressedCount();
+    }
+
+    /**
+     * Emits the enter message, using the arguments not excluded from the log
+     * as the formatting parameters. If calls have been suppressed since the
+     * last report, their count is emitted first, at most once per second.
+     *
+     * @param dispatcher the dispatcher to hand the message to.
+     * @param args the arguments of the method call.
+     */
+    void logBefore(LogDispatcher dispatcher, Object[] args) {
+        final Severity severity = this.severity;
+        if (severity == null) {
+            return;
+        }
+        if (throttle != null) {
+            if (this.dispatcher != dispatcher) {
+                this.dispatcher = dispatcher;
+            }
+            logSuppressed(severity, dispatcher, throttle.takeSuppressed());
+        }
+        final MessageTemplate message = plan.getTemplate(MessageType.BEFORE);
+        final int[] includedParameters = plan.getIncludedParameters();
+        switch (includedParameters.length) {
+            case 0:
+                dispatcher.dispatch(severity, logger, message, plan.getMethodName());
+                break;
+            case 1:
+                dispatcher.dispatch(severity, logger, message, plan.getMethodName(), plan.argument(args, 0));
+                break;
+            default:
+                dispatcher.dispatch(severity, logger, message, plan.packArguments(args));
+        }
+    }
+
+    /**
+     * Emits the count of the calls suppressed since the last report, to the
+     * dispatcher of the last logged call. Called by the timer of the
+     * {@link LogThrottle}.
+     *
+     * @param force true to emit it even if it was emitted less than a second
+     * ago.
+     */
+    void logSuppressed(boolean force) {
+        final Severity severity = this.severity;
+        final LogDispatcher dispatcher = this.dispatcher;
+        if (severity != null && dispatcher != null) {
+            logSuppressed(severity, dispatcher, throttle.takeSuppressed(force));
+        }
+    }
+
+    private void logSuppressed(Severity severity, LogDispatcher dispatcher, long suppressed) {
+        if (suppressed > 0) {
+            dispatcher.dispatchLong(severity, logger, LogThrottle.SUPPRESSED, plan.getMethodName(), suppressed);
+        }
+    }
+
+    /**
+     * Emits the return message.
+     *
+     * @param dispatcher the dispatcher to hand the message to.
+     * @param returnValue the value returned by the method.
+     */
+    void logReturn(LogDispatcher dispatcher, Object returnValue) {
+        final Severity severity = this.severity;
+        if (severity != null) {
+            dispatcher.dispatch(severity, logger, plan.getTemplate(MessageType.AFTER), plan.getMethodName(), plan.returnValue(returnValue));
+        }
+    }
+
+    /**
+     * Emits the exception message.
+     *
+     * @param dispatcher the dispatcher to hand the message to.
+     * @param exception the exception thrown by the method.
+     */
+    void logException(LogDispatcher dispatcher, Throwable exception) {
+        final Severity severity = this.severity;
+        if (severity != null) {
+            dispatcher.dispatch(severity, logger, plan.getTemplate(MessageType.EXCEPTION), plan.getMethodName(), exception);
+        }
+    }
+
+    /**
+     * Emits the return message, adding the elapsed time if the method is timed.
+     *
+     * @param dispatcher the dispatcher to hand the message to.
+     * @param returnValue the value returned by the method.
+     * @param elapsed the execution time in nanoseconds.
+     */
+    void logReturn(LogDispatcher dispatcher, Object returnValue, long elapsed) {
+        if (!plan.isTimed()) {
+            logReturn(dispatcher, returnValue);
+            return;
+        }
+        final Severity severity = this.severity;
+        if (severity != null) {
+            dispatcher.dispatchLong(severity, logger, plan.getTemplate(MessageType.AFTER), plan.getMethodName(), plan.returnValue(returnValue), elapsed);
+        }
+    }
+
+    /**
+     * Emits the exception message, adding the elapsed time if the method is
+     * timed.
+     *
+     * @param dispatcher the dispatcher to hand the message to.
+     * @param exception the exception thrown by the method.
+     * @param elapsed the execution time in nanoseconds.
+     */
+    void logException(LogDispatcher dispatcher, Throwable exception, long elapsed) {
+        if (!plan.isTimed()) {
+            logException(dispatcher, exception);
+            return;
+        }
+        final Severity severity = this.severity;
+        if (severity != null) {
+            dispatcher.dispatchLong(severity, logger, plan.getTemplate(MessageType.EXCEPTION), plan.getMethodName(), exception, elapsed);
+        }
+    }
+
+    /**
+     * Emits the exception message unless the deduplicator holds it back, after
+     * a summary of its repeats if there are any to report. The exception is
+     * also the exception of the message, so its stack trace is logged.
+     *
+     * @param dispatcher the dispatcher to hand the messages to.
+     * @param deduplicator the deduplicator of the exceptions, may be null.
+     * @param exception the exception thrown by the method.
+     * @param elapsed the execution time in nanoseconds.
+     */
+    void logException(LogDispatcher dispatcher, ExceptionDeduplicator deduplicator, Throwable exception, long elapsed) {
+        if (deduplicator == null) {
+            logException(dispatcher, exception, elapsed);
+            return;
+        }
+        final Severity severity = this.severity;
+        if (severity == null) {
+            return;
+        }
+        final long repeats = deduplicator.occurrence(this, exception, dispatcher);
+        if (repeats < 0) {
+            return;
+        }
+        if (repeats > 0) {
+            logRepeats(dispatcher, exception.getClass().getName(), repeats);
+        }
+        final MessageTemplate message = plan.getTemplate(MessageType.EXCEPTION);
+        if (plan.isTimed()) {
+            dispatcher.dispatchLong(severity, logger, message, plan.getMethodName(), exception, elapsed, exception);
+        } else {
+            dispatcher.dispatch(severity, logger, message, new Object[]{plan.getMethodName(), exception, exception});
+        }
+    }
+
+    /**
+     * Emits the summary of the repeats of an exception held back by the
+     * {@link ExceptionDeduplicator}.
+     *
+     * @param dispatcher the dispatcher to hand the message to.
+     * @param type the class name of the exception.
+     * @param repeats the number of repeats.
+     */
+    void logRepeats(LogDispatcher dispatcher, String type, long repeats) {
+        final Severity severity = this.severity;
+        if (severity != null) {
+            dispatcher.dispatchLong(severity, logger, ExceptionDeduplicator.REPEATED, plan.getMethodName(), type, repeats);
+        }
+    }
+
+    /**
+     * Emits the return or exception message, and records the statistics, when
+     * the stage returned by the method completes, on the thread that completes
+     * it. The elapsed time is measured until the completion, and the messages
+     * are logged with the span of the call.
+     *
+     * @param stage the stage returned by the method.
+     * @param dispatcher the dispatcher to hand the messages to.
+     * @param deduplicator the deduplicator of the exceptions, may be null.
+     * @param statistics the statistics of the method, null if they are not
+     * recorded.
+     * @param logged true if the call is logged.
+     * @param startTime the {@link System#nanoTime()} when the method was
+     * called.
+     * @param span the span of the call, taken when it was called, or null if
+     * the calls are not traced.
+     */
+    void logCompletion(CompletionStage<?> stage, final LogDispatcher dispatcher, final ExceptionDeduplicator deduplicator,
+            final MethodStatistics statistics, final boolean logged, final long startTime, final CallSpan span) {
+        stage.whenComplete((value, failure) -> {
+            final long elapsed = statistics != null || plan.isTimed() ? System.nanoTime() - startTime : 0L;
+            if (statistics != null) {
+                if (failure == null) {
+                    statistics.recordSuccess(elapsed);
+                } else {
+                    statistics.recordError(elapsed);
+                }
+            }
+            if (logged) {
+                final CallSpan previous = span == null ? null : CallStack.resume(span);
+                try {
+                    if (failure == null) {
+                        logReturn(dispatcher, value, elapsed);
+                    } else {
+                        logException(dispatcher, deduplicator, cause(failure), elapsed);
+                    }
+                } finally {
+                    if (span != null) {
+                        CallStack.restore(previous);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @param failure the exception a stage completed with.
+     * @return the exception thrown by the computation of the stage, unwrapped
+     * from the {@link CompletionException} of the dependent stages.
+     */
+    static Throwable cause(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+}
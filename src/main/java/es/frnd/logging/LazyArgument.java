@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A log message argument rendered on the first call to {@link #toString()},
+ * that is when the backend formats the message, and then remembered.
+ *
+ * @author fernando
+ */
+final class LazyArgument {
+
+    private static final String ELLIPSIS = "...";
+
+    private final Object value;
+    private final Limit limit;
+    private String rendered;
+
+    LazyArgument(Object value, Limit limit) {
+        this.value = value;
+        this.limit = limit;
+    }
+
+    @Override
+    public String toString() {
+        String result = rendered;
+        if (result == null) {
+            result = limit.truncate(render());
+            rendered = result;
+        }
+        return result;
+    }
+
+    private String render() {
+        if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            return renderElements(collection.iterator(), collection.size(), '[', ']');
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            return renderElements(map.entrySet().iterator(), map.size(), '{', '}');
+        }
+        if (value != null && value.getClass().isArray()) {
+            return renderArray();
+        }
+        return limit.fields == null ? String.valueOf(value) : limit.fields.render(value);
+    }
+
+    private String renderElements(Iterator<?> elements, int size, char open, char close) {
+        if (limit.fields == null && (limit.elements < 0 || size <= limit.elements)) {
+            return String.valueOf(value);
+        }
+        int shown = limit.elements < 0 ? size : Math.min(size, limit.elements);
+        StringBuilder buffer = new StringBuilder().append(open);
+        for (int i = 0; i < shown && elements.hasNext(); i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            renderElement(buffer, elements.next());
+        }
+        if (shown < size) {
+            buffer.append(shown > 0 ? ", " : "").append(ELLIPSIS).append(" (").append(size).append(" elements)");
+        }
+        return buffer.append(close).toString();
+    }
+
+    private String renderArray() {
+        int size = Array.getLength(value);
+        int shown = limit.elements < 0 ? size : Math.min(size, limit.elements);
+        StringBuilder buffer = new StringBuilder().append('[');
+        for (int i = 0; i < shown; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            renderElement(buffer, Array.get(value, i));
+        }
+        if (shown < size) {
+            buffer.append(shown > 0 ? ", " : "").append(ELLIPSIS).append(" (").append(size).append(" elements)");
+        }
+        return buffer.append(']').toString();
+    }
+
+    /**
+     * Renders an element of a collection, map or array, projecting it, or the
+     * value of a map entry, if there are {@link LogFields}.
+     */
+    private void renderElement(StringBuilder buffer, Object element) {
+        if (element == value) {
+            buffer.append("(this)");
+        } else if (limit.fields == null) {
+            buffer.append(String.valueOf(element));
+        } else if (element instanceof Map.Entry) {
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) element;
+            buffer.append(String.valueOf(entry.getKey())).append('=').append(limit.fields.render(entry.getValue()));
+        } else {
+            buffer.append(limit.fields.render(element));
+        }
+    }
+
+    /**
+     * The limits of the {@link LogLimit} and {@link LogFields} annotations of
+     * a value, read once when the log plan is built.
+     */
+    static final class Limit {
+
+        final int elements;
+        final int length;
+        /**
+         * The properties to render, null to render the whole value.
+         */
+        final FieldProjection fields;
+
+        Limit(LogLimit annotation) {
+            this(annotation, null);
+        }
+
+        /**
+         * @param limit the limit annotation, may be null.
+         * @param fields the fields annotation, may be null.
+         */
+        Limit(LogLimit limit, LogFields fields) {
+            this(limit == null ? -1 : limit.elements(), limit == null ? -1 : limit.length(),
+                    fields == null ? null : fields.value());
+        }
+
+        Limit(int elements, int length, String[] fields) {
+            this.elements = elements;
+            this.length = length;
+            this.fields = fields == null ? null : new FieldProjection(fields);
+        }
+
+        /**
+         * @param value the argument to wrap.
+         * @return an argument rendered lazily within this limit.
+         */
+        Object wrap(Object value) {
+            return new LazyArgument(value, this);
+        }
+
+        private String truncate(String rendered) {
+            if (length < 0 || rendered.length() <= length) {
+                return rendered;
+            }
+            return rendered.substring(0, length).concat(ELLIPSIS);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import org.slf4j.Logger;
+
+/**
+ * Hands the messages of the advised methods to the logging backend.
+ *
+ * @author fernando
+ */
+public interface LogDispatcher {
+
+    /**
+     * Emits every message on the calling thread. The messages with a primitive
+     * value are formatted with their template before they are handed to the
+     * backend, so the value is never boxed; the backend receives them as plain
+     * text.
+     */
+    LogDispatcher SYNCHRONOUS = new LogDispatcher() {
+        @Override
+        public void dispatch(Severity severity, Logger logger, MessageTemplate message, Object argument) {
+            severity.emit(logger, message.getPattern(), argument);
+        }
+
+        @Override
+        public void dispatch(Severity severity, Logger logger, MessageTemplate message, Object first, Object second) {
+            severity.emit(logger, message.getPattern(), first, second);
+        }
+
+        @Override
+        public void dispatch(Severity severity, Logger logger, MessageTemplate message, Object[] arguments) {
+            severity.emit(logger, message.getPattern(), arguments);
+        }
+
+        @Override
+        public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, Object first, long second) {
+            if (severity.isEnabled(logger)) {
+                severity.emit(logger, message.formatLong(first, second));
+            }
+        }
+
+        @Override
+        public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, Object first, Object second, long third) {
+            if (severity.isEnabled(logger)) {
+                severity.emit(logger, message.formatLong(first, second, third));
+            }
+        }
+
+        @Override
+        public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, Object first, Object second, long third,
+                Throwable exception) {
+            if (severity.isEnabled(logger)) {
+                String text = message.formatLong(first, second, third);
+                if (message.getSlots() < 4 && exception != null) {
+                    severity.emit(logger, text, exception);
+                } else {
+                    severity.emit(logger, text);
+                }
+            }
+        }
+
+        @Override
+        public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, CallSpan span, Object first,
+                Object second, long third) {
+            if (severity.isEnabled(logger)) {
+                severity.emit(logger, message.formatLong(span, first, second, third));
+            }
+        }
+
+        @Override
+        public void dispatchLong(Severity severity, Logger logger, MessageTemplate message, CallSpan span, Object first,
+                Object second, long third, Throwable exception) {
+            if (severity.isEnabled(logger)) {
+                String text = message.formatLong(span, first, second, third);
+                if (message.getSlots() < 5 && exception != null) {
+                    severity.emit(logger, text, exception);
+                } else {
+                    severity.emit(logger, text);
+                }
+            }
+        }
+    };
+
+    /**
+     * Called when a {@link Logging#batchScope() batch scope} method ends, so
+     * the dispatchers that hold the messages back to emit them together emit
+     * those of the calling thread. Does nothing by default.
+     */
+    default void endBatch() {
+    }
+
+    /**
+     * Dispatches a message with a single template value.
+     *
+     * @param severity the severity of the message.
+     * @param logger the logger to emit the message to.
+     * @param message the compiled template of the log message.
+     * @param argument the value to fill the message template with.
+     */
+    void dispatch(Severity severity, Logger logger, MessageTemplate message, Object argument);
+
+    /**
+     * Dispatches a message with two template values.
+     *
+     * @param severity the severity of the message.
+     * @param logger the logger to emit the message to.
+     * @param message the compiled template of the log message.
+     * @param first the first value to fill the message template with.
+     * @param second the second value to fill the message template with.
+     */
+    void dispatch(Severity severity, Logger logger, MessageTemplate message, Object first, Object second);
+
+    /**
+     * Dispatches a message with the template values packed in an array.
+     *
+     * @param severity the severity of the message.
+     * @param logger the logger to emit the message to.
+     * @param message the compiled template of the log message.
+     * @param arguments the values to fill the message template with.
+     */
+    void dispatch(Severity severity, Logger logger, MessageTemplate message, Object[] arguments);
+
+    /**
+     * Dispatches a message whose second template value is a primitive, such
+     * as a count. Dispatchers that do not format the message on the calling
+     * thread can keep the value unboxed until then; by default it is boxed and
+     * the message is {@link #dispatch(Severity, Logger, MessageTemplate, Object, Object) dispatched}.
+     *
+     * @param severity the severity of the message.
+     * @param logger the logger to emit the message to.
+     * @param message the compiled template of the log message.
+     * @param first the first value to fill the message template with.
+     * @param second the second value to fill the message template with.
+     */
+    default void dispatchLong(Severity severity, Logger logger, MessageTemplate message, Object first, long second) {
+        dispatch(severity, logger, message, first, (Object) second);
+    }
+
+    /**
+     * Dispatches a message whose third template value is a primitive, such as
+     * the elapsed time. Dispatchers that do not format the message on the
+     * calling thread can keep the value unboxed until then; by default it is
+     * boxed and the message is {@link #dispatch(Severity, Logger, MessageTemplate, Object[]) dispatched}.
+     *
+     * @param severity the severity of the message.
+     * @param logger the logger to emit the message to.
+     * @param message the compiled template of the log message.
+     * @param first the first value to fill the message template with.
+     * @param second the second value to fill the message template with.
+     * @param third the third value to fill the message template with.
+     */
+    default void dispatchLong(Severity severity, Logger logger, MessageTemplate message, Object first, Object second, long third) {
+        dispatch(severity, logger, message, new Object[]{first, second, third});
+    }
+
+    /**
+     * Dispatches a message whose third template value is a primitive, such as
+     * the elapsed time, followed by an exception whose stack trace is logged
+     * when no placeholder consumes it. Dispatchers that do not format the
+     * message on the calling thread can keep the value unboxed until then; by
+     * default it is boxed and the message is {@link #dispatch(Severity, Logger, MessageTemplate, Object[]) dispatched}.
+     *
+     * @param severity the severity of the message.
+     * @param logger the logger to emit the message to.
+     * @param message the compiled template of the log message.
+     * @param first the first value to fill the message template with.
+     * @param second the second value to fill the message template with.
+     * @param third the third value to fill the message template with.
+     * @param exception the exception of the message.
+     */
+    default void dispatchLong(Severity severity, Logger logger, MessageTemplate message, Object first, Object second, long third,
+            Throwable exception) {
+        dispatch(severity, logger, message, new Object[]{first, second, third, exception});
+    }
+
+    /**
+     * Dispatches a message of a traced call, whose first template value is its
+     * {@link CallSpan} and whose fourth is a primitive, such as the elapsed
+     * time. Dispatchers that do not format the message on the calling thread
+     * can keep the value unboxed until then; by default it is boxed and the
+     * message is {@link #dispatch(Severity, Logger, MessageTemplate, Object[]) dispatched}.
+     *
+     * @param severity the severity of the message.
+     * @param logger the logger to emit the message to.
+     * @param message the compiled template of the log message.
+     * @param span the span of the call, the first value to fill the message
+     * template with.
+     * @param first the second value to fill the message template with.
+     * @param second the third value to fill the message template with.
+     * @param third the fourth value to fill the message template with.
+     */
+    default void dispatchLong(Severity severity, Logger logger, MessageTemplate message, CallSpan span, Object first,
+            Object second, long third) {
+        dispatch(severity, logger, message, new Object[]{span, first, second, third});
+    }
+
+    /**
+     * Dispatches a message of a traced call, whose first template value is its
+     * {@link CallSpan} and whose fourth is a primitive, such as the elapsed
+     * time, followed by an exception whose stack trace is logged when no
+     * placeholder consumes it. Dispatchers that do not format the message on
+     * the calling thread can keep the value unboxed until then; by default it
+     * is boxed and the message is {@link #dispatch(Severity, Logger, MessageTemplate, Object[]) dispatched}.
+     *
+     * @param severity the severity of the message.
+     * @param logger the logger to emit the message to.
+     * @param message the compiled template of the log message.
+     * @param span the span of the call, the first value to fill the message
+     * template with.
+     * @param first the second value to fill the message template with.
+     * @param second the third value to fill the message template with.
+     * @param third the fourth value to fill the message template with.
+     * @param exception the exception of the message.
+     */
+    default void dispatchLong(Severity severity, Logger logger, MessageTemplate message, CallSpan span, Object first,
+            Object second, long third, Throwable exception) {
+        dispatch(severity, logger, message, new Object[]{span, first, second, third, exception});
+    }
+}
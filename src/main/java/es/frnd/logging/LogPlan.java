@@ -0,0 +1,201 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import es.frnd.logging.MessageCache.MessageType;
+
+/**
+ * Everything needed to log an advised method that does not change between
+ * calls: the message patterns and their compiled {@link MessageTemplate}s,
+ * the indexes of the parameters that are not marked with {@link LogExclude},
+ * the severity, whether it is timed, how often it is logged, whether it ends a
+ * batch, the {@link LogLimit} of the logged values and the {@link RenderCache}
+ * of their text.
+ *
+ * @author fernando
+ */
+public final class LogPlan {
+
+    private final String methodName;
+    private final Severity severity;
+    private final boolean timed;
+    private final int sampleRate;
+    private final int maxPerSecond;
+    private final boolean batchScope;
+    private final String[] messages;
+    private final MessageTemplate[] templates;
+    private final int[] includedParameters;
+    private final LazyArgument.Limit[] limits;
+    private final LazyArgument.Limit returnLimit;
+    private final RenderCache renderCache;
+
+    LogPlan(String methodName, Severity severity, boolean timed, int sampleRate, int maxPerSecond, boolean batchScope,
+            String[] messages, int[] includedParameters, LazyArgument.Limit[] limits, LazyArgument.Limit returnLimit,
+            RenderCache renderCache) {
+        this.methodName = methodName;
+        this.severity = severity;
+        this.timed = timed;
+        this.sampleRate = sampleRate;
+        this.maxPerSecond = maxPerSecond;
+        this.batchScope = batchScope;
+        this.messages = messages;
+        this.templates = new MessageTemplate[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            templates[i] = MessageTemplate.compile(messages[i]);
+        }
+        this.includedParameters = includedParameters;
+        this.limits = limits;
+        this.returnLimit = returnLimit;
+        this.renderCache = renderCache;
+    }
+
+    /**
+     * @return the name of the advised method.
+     */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * @return the severity declared on the {@link Logging} annotation.
+     */
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    /**
+     * @return true if the execution time of the method must be logged.
+     */
+    public boolean isTimed() {
+        return timed;
+    }
+
+    /**
+     * @return the sample rate declared on the {@link Logging} annotation.
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return the maximum logged calls per second declared on the
+     * {@link Logging} annotation.
+     */
+    public int getMaxPerSecond() {
+        return maxPerSecond;
+    }
+
+    /**
+     * @return true if the messages held by the dispatcher must be flushed when
+     * the method ends.
+     */
+    public boolean isBatchScope() {
+        return batchScope;
+    }
+
+    /**
+     * @param type the pointcut the message is for.
+     * @return the message pattern for the given pointcut.
+     */
+    public String getMessage(MessageType type) {
+        return messages[type.ordinal()];
+    }
+
+    /**
+     * @param type the pointcut the message is for.
+     * @return the compiled template of the message for the given pointcut.
+     */
+    MessageTemplate getTemplate(MessageType type) {
+        return templates[type.ordinal()];
+    }
+
+    /**
+     * The indexes, in declaration order, of the parameters that must be logged.
+     * The returned array is shared and must not be modified.
+     *
+     * @return the indexes of the parameters not marked with {@link LogExclude}.
+     */
+    int[] getIncludedParameters() {
+        return includedParameters;
+    }
+
+    /**
+     * @return the limits of the included parameters, null if none has one.
+     */
+    LazyArgument.Limit[] getLimits() {
+        return limits;
+    }
+
+    /**
+     * @return the limit of the return value, or null.
+     */
+    LazyArgument.Limit getReturnLimit() {
+        return returnLimit;
+    }
+
+    /**
+     * Packs the method name followed by the parameters to log in a single
+     * array, ready to be used as the template values of the enter message.
+     *
+     * @param args the arguments of the method call.
+     * @return the method name and the arguments not excluded from the log.
+     */
+    Object[] packArguments(Object[] args) {
+        Object[] arguments = new Object[includedParameters.length + 1];
+        arguments[0] = methodName;
+        for (int i = 0; i < includedParameters.length; i++) {
+            arguments[i + 1] = argument(args, i);
+        }
+        return arguments;
+    }
+
+    /**
+     * Returns the i-th parameter to log, wrapped in a {@link LazyArgument} if
+     * it has a {@link LogLimit}, or replaced by its text if it is cached.
+     *
+     * @param args the arguments of the method call.
+     * @param i the position of the parameter among the included ones.
+     * @return the value to use as a template value.
+     */
+    Object argument(Object[] args, int i) {
+        Object value = args[includedParameters[i]];
+        if (limits != null && limits[i] != null) {
+            return limits[i].wrap(value);
+        }
+        return renderCache == null ? value : renderCache.render(value);
+    }
+
+    /**
+     * @param value the value returned by the method.
+     * @return the value to use as a template value, wrapped in a
+     * {@link LazyArgument} if the method has a {@link LogLimit}, or replaced by
+     * its text if it is cached.
+     */
+    Object returnValue(Object value) {
+        if (returnLimit != null) {
+            return returnLimit.wrap(value);
+        }
+        return renderCache == null ? value : renderCache.render(value);
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Overrides the {@link Logging#severity() severity} of the advised methods at
+ * runtime, or switches their logging off, by method, class or package name.
+ *
+ * Every advised method is registered when its metadata is resolved. The
+ * overrides are applied to the metadata when they change, so the advice reads
+ * the effective severity with a single volatile read. The most specific name
+ * wins: a method override beats a class one, which beats a package one. The
+ * empty name matches every method. Overloaded methods share their name.
+ *
+ * The metadata is referenced weakly, so the registry shared by the advices
+ * does not keep the advised classes, nor their class loaders, from being
+ * unloaded. The methods whose metadata is gone are forgotten.
+ *
+ * @author fernando
+ */
+public final class LogRegistry implements LogRegistryMBean {
+
+    /**
+     * The name the registry is published with in JMX.
+     */
+    public static final String OBJECT_NAME = "es.frnd.logging:type=LogRegistry";
+    private static final LogRegistry DEFAULT = new LogRegistry();
+
+    private final Map<String, List<WeakReference<JoinPointMetadata>>> methods = new LinkedHashMap<String, List<WeakReference<JoinPointMetadata>>>();
+    private final Map<String, Severity> severities = new HashMap<String, Severity>();
+    private final Map<String, Boolean> switches = new HashMap<String, Boolean>();
+
+    /**
+     * @return the registry shared by the advices.
+     */
+    public static LogRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Publishes this registry in the platform MBean server.
+     *
+     * @return the name of the MBean.
+     * @throws JMException if the MBean can not be registered.
+     */
+    public ObjectName registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        server.registerMBean(this, name);
+        return name;
+    }
+
+    /**
+     * Removes this registry from the platform MBean server.
+     *
+     * @throws JMException if the MBean can not be unregistered.
+     */
+    public void unregisterMBean() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+    }
+
+    /**
+     * Registers an advised method and applies the overrides that match it.
+     *
+     * @param metadata the metadata of the method.
+     */
+    synchronized void register(JoinPointMetadata metadata) {
+        String name = metadata.getName();
+        List<WeakReference<JoinPointMetadata>> registered = methods.get(name);
+        if (registered == null) {
+            registered = new ArrayList<WeakReference<JoinPointMetadata>>(1);
+            methods.put(name, registered);
+        } else {
+            expunge(registered);
+        }
+        registered.add(new WeakReference<JoinPointMetadata>(metadata));
+        apply(metadata);
+    }
+
+    @Override
+    public synchronized String[] getMethods() {
+        expungeAll();
+        return methods.keySet().toArray(new String[methods.size()]);
+    }
+
+    /**
+     * @param method the name of an advised method.
+     * @return the severity the method is logged with, or null if it is
+     * switched off or unknown.
+     */
+    public synchronized Severity getSeverity(String method) {
+        List<WeakReference<JoinPointMetadata>> registered = methods.get(method);
+        if (registered != null) {
+            for (WeakReference<JoinPointMetadata> reference : registered) {
+                JoinPointMetadata metadata = reference.get();
+                if (metadata != null) {
+                    return metadata.getEffectiveSeverity();
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String getEffectiveSeverity(String method) {
+        Severity severity = getSeverity(method);
+        return severity == null ? null : severity.name();
+    }
+
+    /**
+     * Overrides the severity of the matching methods.
+     *
+     * @param name a method, class or package name.
+     * @param severity the new severity.
+     */
+    public synchronized void setSeverity(String name, Severity severity) {
+        severities.put(name, severity);
+        applyAll();
+    }
+
+    @Override
+    public void setSeverity(String name, String severity) {
+        setSeverity(name, Severity.valueOf(severity.trim().toUpperCase(Locale.ROOT)));
+    }
+
+    @Override
+    public synchronized void setEnabled(String name, boolean enabled) {
+        switches.put(name, enabled);
+        applyAll();
+    }
+
+    @Override
+    public synchronized void reset(String name) {
+        severities.remove(name);
+        switches.remove(name);
+        applyAll();
+    }
+
+    @Override
+    public synchronized void resetAll() {
+        severities.clear();
+        switches.clear();
+        applyAll();
+    }
+
+    private void applyAll() {
+        expungeAll();
+        for (List<WeakReference<JoinPointMetadata>> registered : methods.values()) {
+            for (WeakReference<JoinPointMetadata> reference : registered) {
+                JoinPointMetadata metadata = reference.get();
+                if (metadata != null) {
+                    apply(metadata);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the methods whose metadata has been collected.
+     */
+    private void expungeAll() {
+        for (Iterator<List<WeakReference<JoinPointMetadata>>> i = methods.values().iterator(); i.hasNext();) {
+            List<WeakReference<JoinPointMetadata>> registered = i.next();
+            expunge(registered);
+            if (registered.isEmpty()) {
+                i.remove();
+            }
+        }
+    }
+
+    private static void expunge(List<WeakReference<JoinPointMetadata>> registered) {
+        for (Iterator<WeakReference<JoinPointMetadata>> i = registered.iterator(); i.hasNext();) {
+            if (i.next().get() == null) {
+                i.remove();
+            }
+        }
+    }
+
+    private void apply(JoinPointMetadata metadata) {
+        Severity severity = find(severities, metadata.getName());
+        Boolean enabled = find(switches, metadata.getName());
+        if (enabled != null && !enabled) {
+            metadata.setEffectiveSeverity(null);
+        } else {
+            metadata.setEffectiveSeverity(severity == null ? metadata.getPlan().getSeverity() : severity);
+        }
+    }
+
+    /**
+     * Finds the value set for the most specific name matching a method.
+     */
+    private static <T> T find(Map<String, T> values, String method) {
+        if (values.isEmpty()) {
+            return null;
+        }
+        String name = method;
+        while (true) {
+            T value = values.get(name);
+            if (value != null) {
+                return value;
+            }
+            int separator = name.lastIndexOf('.');
+            if (separator < 0) {
+                return values.get("");
+            }
+            name = name.substring(0, separator);
+        }
+    }
+}
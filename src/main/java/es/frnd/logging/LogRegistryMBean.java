@@ -0,0 +1,74 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+/**
+ * The management interface of {@link LogRegistry}. The names are advised
+ * methods, as <code>package.Class.method</code>, or class and package
+ * prefixes of them.
+ *
+ * @author fernando
+ */
+public interface LogRegistryMBean {
+
+    /**
+     * @return the names of the methods advised so far.
+     */
+    String[] getMethods();
+
+    /**
+     * @param method the name of an advised method.
+     * @return the severity the method is logged with, or null if it is
+     * switched off or unknown.
+     */
+    String getEffectiveSeverity(String method);
+
+    /**
+     * Overrides the severity of the matching methods.
+     *
+     * @param name a method, class or package name.
+     * @param severity the name of a {@link Severity}.
+     */
+    void setSeverity(String name, String severity);
+
+    /**
+     * Switches the logging of the matching methods on or off.
+     *
+     * @param name a method, class or package name.
+     * @param enabled false to stop logging the methods.
+     */
+    void setEnabled(String name, boolean enabled);
+
+    /**
+     * Removes the overrides set for a name.
+     *
+     * @param name a method, class or package name.
+     */
+    void reset(String name);
+
+    /**
+     * Removes every override.
+     */
+    void resetAll();
+}
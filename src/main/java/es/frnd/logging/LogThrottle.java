@@ -0,0 +1,210 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which calls of an advised method are logged, following its
+ * {@link Logging#sampleRate() sample rate} and
+ * {@link Logging#maxPerSecond() rate limit}, and counts the ones that are not.
+ *
+ * The rate limit is a token bucket of one second of permits, kept as the time
+ * the bucket will be full again so a single compare and set takes a permit.
+ *
+ * The suppressed calls are reported before the next logged call of the
+ * method, at most once per second. The calls no logged call follows are
+ * reported by a timer that runs every second, and when the JVM exits.
+ *
+ * @author fernando
+ */
+final class LogThrottle {
+
+    static final MessageTemplate SUPPRESSED = MessageTemplate.compile("Method {} was not logged {} times");
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    private static final long BURST = TimeUnit.SECONDS.toNanos(1);
+
+    private final int sampleRate;
+    private final long permitInterval;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+    private final LongAdder suppressed = new LongAdder();
+    private final AtomicLong nextReport = new AtomicLong(System.nanoTime());
+    private volatile long reported;
+    /**
+     * True while the throttle waits for the timer to report its suppressed
+     * calls.
+     */
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private volatile JoinPointMetadata owner;
+
+    LogThrottle(int sampleRate, int maxPerSecond) {
+        this.sampleRate = sampleRate;
+        this.permitInterval = maxPerSecond > 0 ? BURST / maxPerSecond : 0L;
+    }
+
+    /**
+     * @param plan the plan of an advised method.
+     * @return a throttle for the method, or null if every call is logged.
+     */
+    static LogThrottle create(LogPlan plan) {
+        if (plan.getSampleRate() <= 1 && plan.getMaxPerSecond() <= 0) {
+            return null;
+        }
+        return new LogThrottle(plan.getSampleRate(), plan.getMaxPerSecond());
+    }
+
+    /**
+     * @return true if this call must be logged, false if it is suppressed.
+     */
+    boolean tryAcquire() {
+        if (sampleRate > 1 && calls.getAndIncrement() % sampleRate != 0) {
+            suppressed.increment();
+            return false;
+        }
+        if (permitInterval > 0 && !takePermit()) {
+            suppressed.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean takePermit() {
+        while (true) {
+            final long now = System.nanoTime();
+            final long current = fullAt.get();
+            final long next = Math.max(current, now) + permitInterval;
+            if (next - now > BURST) {
+                return false;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Has the timer report the suppressed calls through their method, if they
+     * are not reported by a logged call first.
+     *
+     * @param metadata the advised method.
+     */
+    void reportLater(JoinPointMetadata metadata) {
+        if (!pending.get() && pending.compareAndSet(false, true)) {
+            owner = metadata;
+            Reporter.PENDING.add(this);
+        }
+    }
+
+    /**
+     * Returns the calls suppressed since the last report, at most once per
+     * second. Only the caller that wins the report gets a non zero count.
+     *
+     * @return the number of calls to report, 0 if there is nothing to report
+     * yet.
+     */
+    long takeSuppressed() {
+        return takeSuppressed(false);
+    }
+
+    /**
+     * Returns the calls suppressed since the last report.
+     *
+     * @param force true to take them even if they were reported less than a
+     * second ago.
+     * @return the number of calls to report, 0 if there is nothing to report
+     * yet.
+     */
+    long takeSuppressed(boolean force) {
+        final long total = suppressed.sum();
+        if (total == reported) {
+            return 0L;
+        }
+        final long now = System.nanoTime();
+        final long report = nextReport.get();
+        if (!force && (now - report < 0 || !nextReport.compareAndSet(report, now + REPORT_INTERVAL))) {
+            return 0L;
+        }
+        final long count = total - reported;
+        reported = total;
+        return count;
+    }
+
+    /**
+     * @return the number of calls suppressed so far.
+     */
+    long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    /**
+     * Reports the suppressed calls of the throttles waiting for it, every
+     * second and when the JVM exits. It is started by the first throttle that
+     * waits for it.
+     */
+    private static final class Reporter {
+
+        static final Queue<LogThrottle> PENDING = new ConcurrentLinkedQueue<LogThrottle>();
+
+        static {
+            ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "logging-annotation-suppressed-calls");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleWithFixedDelay(() -> report(false), REPORT_INTERVAL, REPORT_INTERVAL, TimeUnit.NANOSECONDS);
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread(() -> report(true), "logging-annotation-suppressed-shutdown"));
+        }
+
+        /**
+         * Reports the throttles waiting, and has those with calls left to
+         * report, reported less than a second ago, wait for the next run.
+         */
+        private static void report(boolean force) {
+            for (int i = PENDING.size(); i > 0; i--) {
+                LogThrottle throttle = PENDING.poll();
+                if (throttle == null) {
+                    return;
+                }
+                throttle.pending.set(false);
+                try {
+                    throttle.owner.logSuppressed(force);
+                } catch (RuntimeException e) {
+                    // a failing appender must not stop the timer
+                }
+                if (throttle.suppressed.sum() != throttle.reported) {
+                    throttle.reportLater(throttle.owner);
+                }
+            }
+        }
+    }
+}
@@ -31,11 +31,18 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
+ * Logs the calls of a method: the enter message with its arguments and the
+ * return or exception message.
+ *
+ * On a type it applies to all the public methods of the type, with the same
+ * attributes, and a method of the type annotated itself uses its own
+ * annotation instead.
+ *
  * @author Fernando Gonzalez
  *
  */
 @Documented
-@Target(ElementType.METHOD)
+@Target({ElementType.METHOD, ElementType.TYPE})
 @Retention(RetentionPolicy.RUNTIME)
 @Inherited
 public @interface Logging {
@@ -43,6 +50,8 @@ public @interface Logging {
     static final String DEFAULT_ENTER_TEXT = "Calling method {} with args";
     static final String DEFAULT_RETURN_TEXT = "Returning method {} with {}";
     static final String DEFAULT_EXCEPTION_TEXT = "Method {} is trowing an exception: {}";
+    static final String DEFAULT_TIMED_RETURN_TEXT = DEFAULT_RETURN_TEXT + " in {} ns";
+    static final String DEFAULT_TIMED_EXCEPTION_TEXT = DEFAULT_EXCEPTION_TEXT + " after {} ns";
 
     String enterText() default DEFAULT_ENTER_TEXT;
 
@@ -56,4 +65,38 @@ public @interface Logging {
      * @return the log severity for the message.
      */
     Severity severity() default Severity.DEBUG;
+
+    /**
+     * Measures the execution time of the method. The elapsed nanoseconds are
+     * the last formatting parameter of the return and exception messages.
+     *
+     * @return true if the execution time must be logged.
+     */
+    boolean timed() default false;
+
+    /**
+     * Logs one of every N calls of the method. The calls that are not logged
+     * are counted and reported with a later message.
+     *
+     * @return the sample rate, 1 to log every call.
+     */
+    int sampleRate() default 1;
+
+    /**
+     * Logs at most this many calls of the method per second, allowing bursts
+     * of up to one second of calls. The calls that are not logged are counted
+     * and reported with a later message.
+     *
+     * @return the maximum number of logged calls per second, 0 for no limit.
+     */
+    int maxPerSecond() default 0;
+
+    /**
+     * Flushes the messages held by a batching {@link LogDispatcher} for the
+     * current thread when the method ends, for example at the end of a job
+     * that logs a loop of calls.
+     *
+     * @return true if the method ends a batch of messages.
+     */
+    boolean batchScope() default false;
 }
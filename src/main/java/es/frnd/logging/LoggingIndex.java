@@ -0,0 +1,196 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The plans of the logged methods of a compilation unit, generated at compile
+ * time by the <code>logging-annotation-processor</code> module, so
+ * {@link MessageCache} does not read the annotations of the methods and their
+ * parameters at run time.
+ *
+ * The index of a top level class <code>a.B</code> is the generated class
+ * <code>a.B_LoggingIndex</code>, which registers the methods of
+ * <code>a.B</code> and its nested classes in its constructor. The methods of
+ * the classes without an index, or missing in it, are resolved with
+ * reflection as usual.
+ *
+ * @author fernando
+ */
+public abstract class LoggingIndex {
+
+    /**
+     * The suffix of the name of the generated index classes.
+     */
+    public static final String SUFFIX = "_LoggingIndex";
+
+    /**
+     * The index of the classes compiled without the processor.
+     */
+    private static final LoggingIndex NONE = new LoggingIndex() {
+    };
+    private static final ClassValue<LoggingIndex> INDEXES = new ClassValue<LoggingIndex>() {
+        @Override
+        protected LoggingIndex computeValue(Class<?> type) {
+            Class<?> topLevel = type;
+            while (topLevel.getEnclosingClass() != null) {
+                topLevel = topLevel.getEnclosingClass();
+            }
+            if (topLevel != type) {
+                return INDEXES.get(topLevel);
+            }
+            try {
+                Class<?> index = Class.forName(type.getName() + SUFFIX, true, type.getClassLoader());
+                return index.asSubclass(LoggingIndex.class).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                return NONE;
+            }
+        }
+    };
+
+    private final Map<String, Entry> methods = new HashMap<String, Entry>();
+
+    /**
+     * @param type a class with logged methods.
+     * @return the index generated for the class, or an empty one.
+     */
+    static LoggingIndex of(Class<?> type) {
+        return INDEXES.get(type);
+    }
+
+    /**
+     * The key of a method in the index: the binary name of its class, its name
+     * and the names of its parameter types, as
+     * <code>a.B#method(int,java.lang.String[])</code>.
+     *
+     * @param method a logged method.
+     * @return the key of the method.
+     */
+    static String key(Method method) {
+        StringBuilder key = new StringBuilder(method.getDeclaringClass().getName()).append('#')
+                .append(method.getName()).append('(');
+        Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) {
+                key.append(',');
+            }
+            key.append(types[i].getTypeName());
+        }
+        return key.append(')').toString();
+    }
+
+    /**
+     * Builds the plan of an indexed method.
+     *
+     * @param method a logged method.
+     * @param renderCache the cache of the text of the logged values, may be
+     * null.
+     * @return the plan of the method, or null if it is not in the index.
+     */
+    LogPlan plan(Method method, RenderCache renderCache) {
+        if (methods.isEmpty()) {
+            return null;
+        }
+        Entry entry = methods.get(key(method));
+        if (entry == null) {
+            return null;
+        }
+        return new LogPlan(entry.name, entry.severity, entry.timed, entry.sampleRate, entry.maxPerSecond,
+                entry.batchScope, entry.messages.clone(), entry.includedParameters, entry.limits, entry.returnLimit,
+                renderCache);
+    }
+
+    /**
+     * Registers a logged method. Called by the constructor of the generated
+     * indexes.
+     *
+     * @param key the key of the method, as returned by {@link #key(Method)}.
+     * @param name the name of the method.
+     * @param severity the severity of its messages.
+     * @param timed true if its execution time is logged.
+     * @param sampleRate its sample rate.
+     * @param maxPerSecond its maximum logged calls per second.
+     * @param batchScope true if it ends a batch of messages.
+     * @param messages its enter, return and exception message patterns.
+     * @param includedParameters the indexes of the parameters logged.
+     * @param limits the elements and length limits of each logged parameter,
+     * null for the parameters without a limit or if none has one.
+     * @param returnLimit the elements and length limits of the return value,
+     * or null.
+     * @param fields the {@link LogFields} of each logged parameter, null for
+     * the parameters without them or if none has them.
+     * @param returnFields the {@link LogFields} of the return value, or null.
+     */
+    protected final void method(String key, String name, Severity severity, boolean timed, int sampleRate,
+            int maxPerSecond, boolean batchScope, String[] messages, int[] includedParameters, int[][] limits,
+            int[] returnLimit, String[][] fields, String[] returnFields) {
+        LazyArgument.Limit[] parameterLimits = null;
+        if (limits != null || fields != null) {
+            parameterLimits = new LazyArgument.Limit[includedParameters.length];
+            for (int i = 0; i < includedParameters.length; i++) {
+                parameterLimits[i] = limit(limits == null ? null : limits[i], fields == null ? null : fields[i]);
+            }
+        }
+        methods.put(key, new Entry(name, severity, timed, sampleRate, maxPerSecond, batchScope, messages,
+                includedParameters, parameterLimits, limit(returnLimit, returnFields)));
+    }
+
+    private static LazyArgument.Limit limit(int[] limit, String[] fields) {
+        if (limit == null && fields == null) {
+            return null;
+        }
+        return new LazyArgument.Limit(limit == null ? -1 : limit[0], limit == null ? -1 : limit[1], fields);
+    }
+
+    private static final class Entry {
+
+        final String name;
+        final Severity severity;
+        final boolean timed;
+        final int sampleRate;
+        final int maxPerSecond;
+        final boolean batchScope;
+        final String[] messages;
+        final int[] includedParameters;
+        final LazyArgument.Limit[] limits;
+        final LazyArgument.Limit returnLimit;
+
+        Entry(String name, Severity severity, boolean timed, int sampleRate, int maxPerSecond, boolean batchScope,
+                String[] messages, int[] includedParameters, LazyArgument.Limit[] limits, LazyArgument.Limit returnLimit) {
+            this.name = name;
+            this.severity = severity;
+            this.timed = timed;
+            this.sampleRate = sampleRate;
+            this.maxPerSecond = maxPerSecond;
+            this.batchScope = batchScope;
+            this.messages = messages;
+            this.includedParameters = includedParameters;
+            this.limits = limits;
+            this.returnLimit = returnLimit;
+        }
+    }
+}
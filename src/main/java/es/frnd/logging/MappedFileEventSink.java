@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An {@link EventSink} that copies the records into a memory mapped file,
+ * mapping the next region of the file when the current one is full. The
+ * operating system writes the pages back to disk, so a record is a memory copy
+ * for the writing thread. On {@link #close()} the file is cut at the end of
+ * the last record.
+ *
+ * @author fernando
+ */
+public final class MappedFileEventSink implements EventSink {
+
+    /**
+     * The size of the regions mapped when none is given.
+     */
+    public static final int DEFAULT_REGION_SIZE = 16 * 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int regionSize;
+    private MappedByteBuffer region;
+    private long position;
+
+    /**
+     * Creates or overwrites a file, mapped in regions of the default size.
+     *
+     * @param file the file to write.
+     * @throws IOException if the file can not be opened.
+     */
+    public MappedFileEventSink(File file) throws IOException {
+        this(file, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Creates or overwrites a file.
+     *
+     * @param file the file to write.
+     * @param regionSize the number of bytes mapped at once.
+     * @throws IOException if the file can not be opened.
+     */
+    public MappedFileEventSink(File file, int regionSize) throws IOException {
+        this.file = new RandomAccessFile(file, "rw");
+        this.channel = this.file.getChannel();
+        this.regionSize = regionSize;
+        channel.truncate(0);
+        region = channel.map(FileChannel.MapMode.READ_WRITE, 0, regionSize);
+    }
+
+    @Override
+    public synchronized void write(ByteBuffer record) throws IOException {
+        if (region == null) {
+            throw new IOException("The sink is closed");
+        }
+        final int length = record.remaining();
+        if (region.remaining() < length) {
+            region.force();
+            region = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(regionSize, length));
+        }
+        region.put(record);
+        position += length;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (region != null) {
+            region.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (region == null) {
+            return;
+        }
+        region.force();
+        region = null;
+        try {
+            channel.truncate(position);
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -24,8 +24,14 @@
 package es.frnd.logging;
 
 import java.lang.annotation.Annotation;
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A cache for the message formatting pattern.
@@ -65,13 +71,19 @@ public class MessageCache {
             @Override
             protected String create(Logging logAnnotation, String methodName, Annotation[][] annotations) {
                 String returnText = logAnnotation.returnText();
+                if (logAnnotation.timed() && Logging.DEFAULT_RETURN_TEXT.equals(returnText)) {
+                    returnText = Logging.DEFAULT_TIMED_RETURN_TEXT;
+                }
                 return returnText;
             }
         },
         EXCEPTION() {
             @Override
             protected String create(Logging logAnnotation, String methodName, Annotation[][] annotations) {
-                final String exceptionText = logAnnotation.exceptionText();
+                String exceptionText = logAnnotation.exceptionText();
+                if (logAnnotation.timed() && Logging.DEFAULT_EXCEPTION_TEXT.equals(exceptionText)) {
+                    exceptionText = Logging.DEFAULT_TIMED_EXCEPTION_TEXT;
+                }
                 return exceptionText;
             }
         };
@@ -87,21 +99,270 @@ public class MessageCache {
         protected abstract String create(Logging logAnnotation, String methodName, Annotation[][] annotations);
     }
 
+    /**
+     * The metadata already resolved, one per advised method. The key is the
+     * method and not the join point static part because Spring AOP creates a
+     * new static part on each invocation.
+     */
+    private final ConcurrentMap<Method, JoinPointMetadata> metadata = new ConcurrentHashMap<Method, JoinPointMetadata>();
+    private final LogRegistry registry;
+    private volatile RenderCache renderCache;
+
+    /**
+     * Creates a cache whose methods are registered in the default
+     * {@link LogRegistry}.
+     */
+    public MessageCache() {
+        this(LogRegistry.getDefault());
+    }
+
+    /**
+     * @param registry the registry the advised methods are registered in.
+     */
+    public MessageCache(LogRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @return the cache of the text of the logged values, or null.
+     */
+    public RenderCache getRenderCache() {
+        return renderCache;
+    }
+
+    /**
+     * Sets the cache of the text of the logged values. It is used by the
+     * methods advised for the first time after it is set.
+     *
+     * @param renderCache the cache, or null to render every value.
+     */
+    public void setRenderCache(RenderCache renderCache) {
+        this.renderCache = renderCache;
+    }
+
+    /**
+     * Returns the metadata for the advised method, resolving it on the first
+     * call.
+     *
+     * @param signature the signature of the advised method.
+     * @param logAnnotation the log annotation of the advised method, null to
+     * look it up.
+     * @return the cached metadata.
+     */
+    protected JoinPointMetadata getMetadata(MethodSignature signature, Logging logAnnotation) {
+        Method method = signature.getMethod();
+        JoinPointMetadata result = metadata.get(method);
+        if (result == null) {
+            result = createMetadata(signature, logAnnotation);
+            JoinPointMetadata existing = metadata.putIfAbsent(method, result);
+            if (existing != null) {
+                result = existing;
+            } else {
+                registry.register(result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the {@link Logging} annotation that applies to a method: its own
+     * or, if it has none, the one of its declaring type.
+     *
+     * @param method the advised method.
+     * @return the annotation, or null if neither is annotated.
+     */
+    static Logging findLogging(Method method) {
+        Logging logAnnotation = method.getAnnotation(Logging.class);
+        if (logAnnotation == null) {
+            logAnnotation = method.getDeclaringClass().getAnnotation(Logging.class);
+        }
+        return logAnnotation;
+    }
+
+    /**
+     * Returns the metadata for the advised method, resolving it on the first
+     * call. The {@link Logging} annotation that applies to the method is only
+     * looked up if the method is not in a {@link LoggingIndex}.
+     *
+     * @param signature the signature of the advised method.
+     * @return the cached metadata.
+     */
+    protected JoinPointMetadata getMetadata(MethodSignature signature) {
+        return getMetadata(signature, null);
+    }
+
+    /**
+     * Returns the plan for the advised method, building it on the first call.
+     *
+     * @param signature the signature of the advised method.
+     * @param logAnnotation the log annotation of the advised method.
+     * @return the cached plan.
+     */
+    protected LogPlan getPlan(MethodSignature signature, Logging logAnnotation) {
+        return getMetadata(signature, logAnnotation).getPlan();
+    }
+
+    /**
+     * @return the metadata of every method advised so far.
+     */
+    protected Collection<JoinPointMetadata> getAllMetadata() {
+        return Collections.unmodifiableCollection(metadata.values());
+    }
+
+    /**
+     * Resolves the metadata of an advised method, from the
+     * {@link LoggingIndex} generated at compile time for its class if there
+     * is one, or else from its annotations.
+     *
+     * @param signature the signature of the advised method.
+     * @param logAnnotation the log annotation of the advised method, null to
+     * look it up.
+     * @return new metadata.
+     */
+    protected JoinPointMetadata createMetadata(MethodSignature signature, Logging logAnnotation) {
+        Method method = signature.getMethod();
+        Logger logger = LoggerFactory.getLogger(signature.getDeclaringType());
+        LogPlan indexed = LoggingIndex.of(method.getDeclaringClass()).plan(method, renderCache);
+        if (indexed != null) {
+            return new JoinPointMetadata(method, logger, null, indexed);
+        }
+        if (logAnnotation == null) {
+            logAnnotation = findLogging(method);
+        }
+        Annotation[][] annotations = method.getParameterAnnotations();
+        LogPlan plan = createPlan(logAnnotation, signature.getName(), annotations, method.getAnnotation(LogLimit.class),
+                method.getAnnotation(LogFields.class));
+        return new JoinPointMetadata(method, logger, annotations, plan);
+    }
+
+    /**
+     * Builds the plan for a method: the messages for every pointcut, the
+     * parameters to log and the severity.
+     *
+     * @param logAnnotation the log annotation of the method.
+     * @param methodName the name of the method.
+     * @param annotations the annotations of the method parameters.
+     * @return a new plan.
+     */
+    protected LogPlan createPlan(Logging logAnnotation, String methodName, Annotation[][] annotations) {
+        return createPlan(logAnnotation, methodName, annotations, null);
+    }
+
+    /**
+     * Builds the plan for a method: the messages for every pointcut, the
+     * parameters to log, their limits, the severity and the
+     * {@link RenderCache}. The plan compiles the messages into the
+     * templates handed to the {@link LogDispatcher}.
+     *
+     * @param logAnnotation the log annotation of the method.
+     * @param methodName the name of the method.
+     * @param annotations the annotations of the method parameters.
+     * @param returnLimit the limit of the return value, may be null.
+     * @return a new plan.
+     */
+    protected LogPlan createPlan(Logging logAnnotation, String methodName, Annotation[][] annotations, LogLimit returnLimit) {
+        return createPlan(logAnnotation, methodName, annotations, returnLimit, null);
+    }
+
+    /**
+     * Builds the plan for a method: the messages for every pointcut, the
+     * parameters to log, their limits and fields, the severity and the
+     * {@link RenderCache}. The plan compiles the messages into the templates
+     * handed to the {@link LogDispatcher}.
+     *
+     * @param logAnnotation the log annotation of the method.
+     * @param methodName the name of the method.
+     * @param annotations the annotations of the method parameters.
+     * @param returnLimit the limit of the return value, may be null.
+     * @param returnFields the fields of the return value to log, may be null.
+     * @return a new plan.
+     */
+    protected LogPlan createPlan(Logging logAnnotation, String methodName, Annotation[][] annotations, LogLimit returnLimit,
+            LogFields returnFields) {
+        MessageType[] types = MessageType.values();
+        String[] messages = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            messages[i] = getMessage(types[i], logAnnotation, methodName, annotations);
+        }
+        int[] includedParameters = includedParameters(annotations);
+        return new LogPlan(methodName, logAnnotation.severity(), logAnnotation.timed(), logAnnotation.sampleRate(),
+                logAnnotation.maxPerSecond(), logAnnotation.batchScope(), messages, includedParameters,
+                limits(annotations, includedParameters),
+                returnLimit == null && returnFields == null ? null : new LazyArgument.Limit(returnLimit, returnFields),
+                renderCache);
+    }
+
     protected String getMessage(MessageType type, Logging logAnnotation, String methodName, Annotation[][] annotations) {
-        // TODO caching the messages! (call.getStaticPart().getId();)
         final String messagePattern = type.create(logAnnotation, methodName, annotations);
         return messagePattern;
     }
 
     protected Object[] extractArguments(Object[] args, Annotation[][] annotations) {
-        List<Object> asList = new ArrayList<Object>();
+        return extractArguments(args, includedParameters(annotations));
+    }
+
+    protected Object[] extractArguments(Object[] args, LogPlan plan) {
+        return extractArguments(args, plan.getIncludedParameters());
+    }
+
+    /**
+     * Packs the method name followed by the parameters to log in a single
+     * array, ready to be used as the template values of the enter message.
+     *
+     * @param args the arguments of the method call.
+     * @param plan the plan of the called method.
+     * @return the method name and the arguments not excluded from the log.
+     */
+    protected Object[] packArguments(Object[] args, LogPlan plan) {
+        return plan.packArguments(args);
+    }
+
+    private static Object[] extractArguments(Object[] args, int[] includedParameters) {
+        Object[] arguments = new Object[includedParameters.length];
+        for (int i = 0; i < includedParameters.length; i++) {
+            arguments[i] = args[includedParameters[i]];
+        }
+        return arguments;
+    }
+
+    private static int[] includedParameters(Annotation[][] annotations) {
+        int count = 0;
+        int[] indexes = new int[annotations.length];
+        for (int i = 0; i < annotations.length; i++) {
+            if (!containsExclude(annotations[i])) {
+                indexes[count++] = i;
+            }
+        }
+        if (count == indexes.length) {
+            return indexes;
+        }
+        int[] included = new int[count];
+        System.arraycopy(indexes, 0, included, 0, count);
+        return included;
+    }
+
+    private static LazyArgument.Limit[] limits(Annotation[][] annotations, int[] includedParameters) {
+        LazyArgument.Limit[] limits = null;
+        for (int i = 0; i < includedParameters.length; i++) {
+            LogLimit limit = find(annotations[includedParameters[i]], LogLimit.class);
+            LogFields fields = find(annotations[includedParameters[i]], LogFields.class);
+            if (limit != null || fields != null) {
+                if (limits == null) {
+                    limits = new LazyArgument.Limit[includedParameters.length];
+                }
+                limits[i] = new LazyArgument.Limit(limit, fields);
+            }
+        }
+        return limits;
+    }
+
+    private static <T extends Annotation> T find(Annotation[] annotations, Class<T> type) {
         for (int i = 0; i < annotations.length; i++) {
-            Annotation[] annotation = annotations[i];
-            if (!containsExclude(annotation)) {
-                asList.add(args[i]);
+            if (type.isInstance(annotations[i])) {
+                return type.cast(annotations[i]);
             }
         }
-        return asList.toArray();
+        return null;
     }
 
     private static boolean containsExclude(Annotation[] annotations) {
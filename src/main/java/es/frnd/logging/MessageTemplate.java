@@ -0,0 +1,314 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A message pattern with SLF4J <code>{}</code> placeholders, parsed once into
+ * its literal segments. The messages are rendered into a builder reused by the
+ * calling thread, producing the same text as SLF4J's
+ * <code>MessageFormatter</code>: <code>\{}</code> is a literal
+ * <code>{}</code>, placeholders without a value are kept, arrays are rendered
+ * with their elements and a failing <code>toString()</code> is replaced by
+ * <code>[FAILED toString()]</code>.
+ *
+ * The templates of the messages of an advised method are compiled once, when
+ * its {@link LogPlan} is built, and handed to the {@link LogDispatcher} with
+ * every message, so the dispatchers that format the messages themselves never
+ * parse or look up a pattern.
+ *
+ * @author fernando
+ */
+public final class MessageTemplate {
+
+    private static final String PLACEHOLDER = "{}";
+    /**
+     * Builders that grew beyond this are not kept by the thread.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 4096;
+    private static final String SPAN_PREFIX = PLACEHOLDER + " ";
+    private static final ThreadLocal<StringBuilder[]> BUILDERS = new ThreadLocal<StringBuilder[]>() {
+        @Override
+        protected StringBuilder[] initialValue() {
+            return new StringBuilder[]{new StringBuilder(256)};
+        }
+    };
+
+    /**
+     * The text before, between and after the placeholders, one more than the
+     * number of placeholders, with the escaped placeholders resolved.
+     */
+    private final String[] segments;
+    /**
+     * The pattern after each placeholder as written, starting with the whole
+     * pattern. SLF4J copies it untouched when it runs out of values.
+     */
+    private final String[] tails;
+    private final int slots;
+    private final String pattern;
+    /**
+     * This template with a leading placeholder for the {@link CallSpan},
+     * created by the first {@link #withSpan()}.
+     */
+    private MessageTemplate withSpan;
+
+    private MessageTemplate(String pattern, String[] segments, String[] tails) {
+        this.pattern = pattern;
+        this.segments = segments;
+        this.tails = tails;
+        this.slots = segments.length - 1;
+    }
+
+    /**
+     * Parses a pattern. The templates are not cached, so the callers keep
+     * those they use again.
+     *
+     * @param pattern a message pattern.
+     * @return the compiled template.
+     */
+    public static MessageTemplate compile(String pattern) {
+        List<String> segments = new ArrayList<String>();
+        List<String> tails = new ArrayList<String>();
+        tails.add(pattern);
+        StringBuilder segment = new StringBuilder();
+        int start = 0;
+        int index;
+        while ((index = pattern.indexOf(PLACEHOLDER, start)) >= 0) {
+            boolean escaped = index > 0 && pattern.charAt(index - 1) == '\\';
+            boolean doubleEscaped = escaped && index > 1 && pattern.charAt(index - 2) == '\\';
+            if (escaped && !doubleEscaped) {
+                segment.append(pattern, start, index - 1).append(PLACEHOLDER);
+            } else {
+                segment.append(pattern, start, doubleEscaped ? index - 1 : index);
+                segments.add(segment.toString());
+                segment.setLength(0);
+                tails.add(pattern.substring(index + PLACEHOLDER.length()));
+            }
+            start = index + PLACEHOLDER.length();
+        }
+        segments.add(segment.append(pattern, start, pattern.length()).toString());
+        return new MessageTemplate(pattern, segments.toArray(new String[segments.size()]), tails.toArray(new String[tails.size()]));
+    }
+
+    /**
+     * @return the pattern the template was compiled from.
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Returns this template with a leading <code>{} </code> for the
+     * {@link CallSpan} of the message, compiled once.
+     *
+     * @return the template of the prefixed pattern.
+     */
+    MessageTemplate withSpan() {
+        MessageTemplate result = withSpan;
+        if (result == null) {
+            // racing threads compile equal templates, any of them will do
+            result = compile(SPAN_PREFIX + pattern);
+            withSpan = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof MessageTemplate && pattern.equals(((MessageTemplate) obj).pattern);
+    }
+
+    @Override
+    public int hashCode() {
+        return pattern.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    /**
+     * @return the number of placeholders.
+     */
+    int getSlots() {
+        return slots;
+    }
+
+    String format(Object value) {
+        StringBuilder builder = acquire();
+        int filled = 0;
+        if (filled < slots) {
+            builder.append(segments[filled++]);
+            appendValue(builder, value);
+        }
+        return finish(builder, filled, 1);
+    }
+
+    String format(Object first, Object second) {
+        StringBuilder builder = acquire();
+        int filled = 0;
+        if (filled < slots) {
+            builder.append(segments[filled++]);
+            appendValue(builder, first);
+        }
+        if (filled < slots) {
+            builder.append(segments[filled++]);
+            appendValue(builder, second);
+        }
+        return finish(builder, filled, 2);
+    }
+
+    String format(Object[] values) {
+        StringBuilder builder = acquire();
+        int filled = 0;
+        while (filled < values.length && filled < slots) {
+            builder.append(segments[filled]);
+            appendValue(builder, values[filled++]);
+        }
+        return finish(builder, filled, values.length);
+    }
+
+    String formatLong(Object first, long second) {
+        StringBuilder builder = acquire();
+        int filled = 0;
+        if (filled < slots) {
+            builder.append(segments[filled++]);
+            appendValue(builder, first);
+        }
+        if (filled < slots) {
+            builder.append(segments[filled++]).append(second);
+        }
+        return finish(builder, filled, 2);
+    }
+
+    String formatLong(Object first, Object second, long third) {
+        StringBuilder builder = acquire();
+        int filled = 0;
+        if (filled < slots) {
+            builder.append(segments[filled++]);
+            appendValue(builder, first);
+        }
+        if (filled < slots) {
+            builder.append(segments[filled++]);
+            appendValue(builder, second);
+        }
+        if (filled < slots) {
+            builder.append(segments[filled++]).append(third);
+        }
+        return finish(builder, filled, 3);
+    }
+
+    String formatLong(Object first, Object second, Object third, long fourth) {
+        StringBuilder builder = acquire();
+        int filled = 0;
+        if (filled < slots) {
+            builder.append(segments[filled++]);
+            appendValue(builder, first);
+        }
+        if (filled < slots) {
+            builder.append(segments[filled++]);
+            appendValue(builder, second);
+        }
+        if (filled < slots) {
+            builder.append(segments[filled++]);
+            appendValue(builder, third);
+        }
+        if (filled < slots) {
+            builder.append(segments[filled++]).append(fourth);
+        }
+        return finish(builder, filled, 4);
+    }
+
+    /**
+     * Takes the builder of the thread. A message rendered while another one
+     * is being rendered, from a <code>toString()</code>, gets a new one.
+     */
+    private static StringBuilder acquire() {
+        StringBuilder[] holder = BUILDERS.get();
+        StringBuilder builder = holder[0];
+        if (builder == null) {
+            return new StringBuilder(256);
+        }
+        holder[0] = null;
+        builder.setLength(0);
+        return builder;
+    }
+
+    /**
+     * Appends the text after the last filled placeholder and gives the builder
+     * back to the thread.
+     */
+    private String finish(StringBuilder builder, int filled, int count) {
+        builder.append(count > slots ? segments[slots] : tails[filled]);
+        String message = builder.toString();
+        if (builder.capacity() <= MAX_RETAINED_CAPACITY) {
+            BUILDERS.get()[0] = builder;
+        }
+        return message;
+    }
+
+    private static void appendValue(StringBuilder builder, Object value) {
+        if (value instanceof Integer) {
+            builder.append(((Integer) value).intValue());
+        } else if (value instanceof Long) {
+            builder.append(((Long) value).longValue());
+        } else if (value instanceof Boolean) {
+            builder.append(((Boolean) value).booleanValue());
+        } else if (value instanceof Character) {
+            builder.append(((Character) value).charValue());
+        } else if (value instanceof Double) {
+            builder.append(((Double) value).doubleValue());
+        } else if (value instanceof String) {
+            builder.append((String) value);
+        } else if (value == null || !value.getClass().isArray()) {
+            try {
+                builder.append(String.valueOf(value));
+            } catch (Throwable t) {
+                builder.append("[FAILED toString()]");
+            }
+        } else if (value instanceof Object[]) {
+            builder.append(Arrays.deepToString((Object[]) value));
+        } else if (value instanceof int[]) {
+            builder.append(Arrays.toString((int[]) value));
+        } else if (value instanceof long[]) {
+            builder.append(Arrays.toString((long[]) value));
+        } else if (value instanceof byte[]) {
+            builder.append(Arrays.toString((byte[]) value));
+        } else if (value instanceof short[]) {
+            builder.append(Arrays.toString((short[]) value));
+        } else if (value instanceof char[]) {
+            builder.append(Arrays.toString((char[]) value));
+        } else if (value instanceof boolean[]) {
+            builder.append(Arrays.toString((boolean[]) value));
+        } else if (value instanceof float[]) {
+            builder.append(Arrays.toString((float[]) value));
+        } else {
+            builder.append(Arrays.toString((double[]) value));
+        }
+    }
+}
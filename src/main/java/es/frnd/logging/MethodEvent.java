@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * A Java Flight Recorder event for a call of an advised method, emitted by
+ * {@link MethodLoggingAdvice} when its
+ * {@link MethodLoggingAdvice#setFlightRecorderEvents(boolean) flight recorder
+ * events are enabled}. The event records the duration and thread of the call,
+ * the method, its logged arguments and the class of the exception it threw.
+ * For a method returning a {@link java.util.concurrent.CompletionStage} the
+ * event lasts until the stage completes, and is committed by the thread that
+ * completes it.
+ *
+ * The event is only created while a recording enables it, which is read from
+ * its {@link EventType} without allocating, and only filled and committed when
+ * the call lasts longer than its threshold, so it costs almost nothing when no
+ * recording is running. The advice only reaches it through
+ * {@link MethodEvents}, so the library loads on a JVM without
+ * <code>jdk.jfr</code>. It is named
+ * <code>es.frnd.logging.Method</code> and can be configured as any other event,
+ * for example to record the calls that last more than 10 ms:
+ *
+ * <pre>
+ * recording.enable(MethodEvent.class).withThreshold(Duration.ofMillis(10));
+ * </pre>
+ *
+ * @author fernando
+ */
+@Name("es.frnd.logging.Method")
+@Label("Advised Method")
+@Description("A call of a method annotated with @Logging")
+@Category("Logging")
+@StackTrace(false)
+public final class MethodEvent extends Event {
+
+    @Label("Method")
+    @Description("The class and name of the method")
+    String method;
+    @Label("Arguments")
+    @Description("The arguments not excluded from the log")
+    String arguments;
+    @Label("Exception")
+    @Description("The class of the exception thrown by the method")
+    Class<?> exception;
+
+    /**
+     * Creates the event of a call if a recording enables it. It must be
+     * {@link #begin() begun} when the method is called.
+     *
+     * @return the event, or null if it is not enabled.
+     */
+    static MethodEvent create() {
+        return Type.TYPE.isEnabled() ? new MethodEvent() : null;
+    }
+
+    /**
+     * Ends the call and commits the event if it lasted longer than its
+     * threshold. The arguments are only rendered then.
+     *
+     * @param metadata the metadata of the advised method.
+     * @param args the arguments of the call.
+     * @param failure the exception thrown by the method, or null.
+     */
+    void complete(JoinPointMetadata metadata, Object[] args, Throwable failure) {
+        end();
+        if (shouldCommit()) {
+            LogPlan plan = metadata.getPlan();
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < plan.getIncludedParameters().length; i++) {
+                if (i > 0) {
+                    text.append(", ");
+                }
+                text.append(MessageFormatter.format("{}", plan.argument(args, i)).getMessage());
+            }
+            method = metadata.getName();
+            arguments = text.toString();
+            exception = failure == null ? null : failure.getClass();
+            commit();
+        }
+    }
+
+    /**
+     * Holds the type of the event, registered once the event class is
+     * initialized.
+     */
+    private static final class Type {
+
+        static final EventType TYPE = EventType.getEventType(MethodEvent.class);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+/**
+ * The only way the advice reaches {@link MethodEvent}. It has no reference to
+ * <code>jdk.jfr</code> types, and only touches {@link MethodEvent} once it
+ * knows the JVM has Java Flight Recorder, so the library still loads and runs
+ * on a JVM without it. The events are then never created.
+ *
+ * @author fernando
+ */
+final class MethodEvents {
+
+    private static final boolean AVAILABLE = available();
+
+    private MethodEvents() {
+    }
+
+    /**
+     * Creates the event of a call if a recording enables it.
+     *
+     * @return the {@link MethodEvent}, or null if it is not enabled or the
+     * JVM has no Java Flight Recorder.
+     */
+    static Object create() {
+        return AVAILABLE ? MethodEvent.create() : null;
+    }
+
+    /**
+     * Starts timing the call of an event.
+     *
+     * @param event an event returned by {@link #create()}.
+     */
+    static void begin(Object event) {
+        ((MethodEvent) event).begin();
+    }
+
+    /**
+     * Ends the call of an event, see
+     * {@link MethodEvent#complete(JoinPointMetadata, Object[], Throwable)}.
+     *
+     * @param event an event returned by {@link #create()}.
+     * @param metadata the metadata of the advised method.
+     * @param args the arguments of the call.
+     * @param failure the exception thrown by the method, or null.
+     */
+    static void complete(Object event, JoinPointMetadata metadata, Object[] args, Throwable failure) {
+        ((MethodEvent) event).complete(metadata, args, failure);
+    }
+
+    private static boolean available() {
+        try {
+            Class.forName("jdk.jfr.Event", false, MethodEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+}
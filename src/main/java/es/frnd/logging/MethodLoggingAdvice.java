@@ -23,109 +23,293 @@
  */
 package es.frnd.logging;
 
-import es.frnd.logging.MessageCache.MessageType;
-import java.lang.annotation.Annotation;
-import org.aspectj.lang.JoinPoint;
-import org.aspectj.lang.Signature;
-import org.aspectj.lang.annotation.AfterReturning;
-import org.aspectj.lang.annotation.AfterThrowing;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.reflect.MethodSignature;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Intercepts method calls and logs the appropriate messages for each of the
  * logging annotations in this package.
  *
+ * A single around advice emits the enter, return and exception messages, so
+ * the annotation is bound and the severity, sample rate and rate limit checked
+ * once per call.
+ *
+ * When {@link #setStatisticsEnabled(boolean) statistics are enabled} the
+ * invocations, errors and execution time of every advised method are also
+ * recorded, whatever the log severity, and can be read with
+ * {@link #getStatistics()}.
+ *
+ * When {@link #setCallTracing(boolean) call tracing is enabled} every message
+ * logged inside an advised call is prefixed with its {@link CallSpan}, so the
+ * messages of nested advised calls can be correlated and read as a tree.
+ *
+ * When {@link #setFlightRecorderEvents(boolean) flight recorder events are
+ * enabled} every advised call is also recorded as a {@link MethodEvent}.
  */
 @Aspect
 public class MethodLoggingAdvice {
 
     MessageCache messageCache = new MessageCache();
+    private volatile boolean statisticsEnabled;
+    private volatile LogDispatcher dispatcher = LogDispatcher.SYNCHRONOUS;
+    private volatile boolean callTracing;
+    private volatile ExceptionDeduplicator exceptionDeduplicator;
+    private volatile boolean flightRecorderEvents;
+    /**
+     * The dispatcher the messages are actually handed to: {@link #dispatcher}
+     * or, when tracing calls, a {@link CallTreeLogDispatcher} wrapping it.
+     */
+    private volatile LogDispatcher effectiveDispatcher = dispatcher;
+
+    /**
+     * @return the dispatcher the messages are handed to.
+     */
+    public LogDispatcher getDispatcher() {
+        return dispatcher;
+    }
 
     /**
-     * Emits the log message from a {@link Logging} annotation, using the method
-     * call's parameter list as the formatting parameters.
+     * Sets the dispatcher the messages are handed to, for example an
+     * {@link AsyncLogDispatcher}. By default the messages are emitted
+     * synchronously.
      *
-     * @param call the method call being intercepted.
-     * @param logAnnotation the log annotation.
+     * @param dispatcher the dispatcher.
      */
-    @Before(value = "execution(* *(..)) and @annotation(logAnnotation)", argNames = "logAnnotation")
-    public void logBefore(JoinPoint call, Logging logAnnotation) {
-        Logger logger = extractLogger(call);
-        final Severity severity = logAnnotation.severity();
-        if (!severity.isEnabled(logger)) {
-            return;
-        }
-        MethodSignature signature = (MethodSignature) call.getSignature();
-        Annotation[][] annotations = signature.getMethod().getParameterAnnotations();
-        String methodName = signature.getName();
-        String message = messageCache.getMessage(MessageType.BEFORE, logAnnotation, methodName, annotations);
-        final Object[] args = messageCache.extractArguments(call.getArgs(), annotations);
-        severity.log(logger, message, methodName, args);
+    public synchronized void setDispatcher(LogDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+        this.effectiveDispatcher = callTracing ? new CallTreeLogDispatcher(dispatcher) : dispatcher;
     }
 
     /**
-     * Emits the log message from a {@link Logging} annotation, using the
-     * method's return value as the (sole) formatting parameter.
+     * @return true if the messages are prefixed with their {@link CallSpan}.
+     */
+    public boolean isCallTracing() {
+        return callTracing;
+    }
+
+    /**
+     * Enables or disables call tracing. While it is enabled a span is pushed on
+     * a stack kept by the current thread for every logged call, and popped when
+     * it ends, and the messages are prefixed with the span of the innermost
+     * logged call: its trace, parent and span ids, and an indentation by depth.
      *
-     * @param call the method call being intercepted.
-     * @param logAnnotation the log annotation.
+     * @param callTracing true to prefix the messages with their span.
      */
-    @AfterReturning(pointcut = "execution(* *(..)) and @annotation(logAnnotation)", returning = "returnValue", argNames = "logAnnotation, returnValue")
-    public void logReturn(JoinPoint call, Logging logAnnotation,
-            Object returnValue) {
-        Logger logger = extractLogger(call);
-        final Severity severity = logAnnotation.severity();
-        if (!severity.isEnabled(logger)) {
-            return;
-        }
-        MethodSignature signature = (MethodSignature) call.getSignature();
-        Annotation[][] annotations = signature.getMethod().getParameterAnnotations();
-        String methodName = signature.getName();
-        String message = messageCache.getMessage(MessageType.AFTER, logAnnotation, methodName, annotations);
-        severity.log(logger, message, methodName, returnValue);
+    public synchronized void setCallTracing(boolean callTracing) {
+        this.callTracing = callTracing;
+        this.effectiveDispatcher = callTracing ? new CallTreeLogDispatcher(dispatcher) : dispatcher;
+    }
+
+    /**
+     * @return the deduplicator of the logged exceptions, or null.
+     */
+    public ExceptionDeduplicator getExceptionDeduplicator() {
+        return exceptionDeduplicator;
     }
 
     /**
-     * Emits the log message from a {@link Logging} annotation, including the
-     * method call's thrown exception.
+     * Sets a deduplicator of the logged exceptions, so the repeats of an
+     * exception are summarized and an exception is only logged by the
+     * innermost advised method it is thrown through. By default every
+     * exception is logged.
+     *
+     * @param exceptionDeduplicator the deduplicator, or null to log every
+     * exception.
+     */
+    public void setExceptionDeduplicator(ExceptionDeduplicator exceptionDeduplicator) {
+        this.exceptionDeduplicator = exceptionDeduplicator;
+    }
+
+    /**
+     * @return true if a {@link MethodEvent} is emitted for the advised calls.
+     */
+    public boolean isFlightRecorderEvents() {
+        return flightRecorderEvents;
+    }
+
+    /**
+     * Enables or disables the {@link MethodEvent Java Flight Recorder events}
+     * of the advised calls. While it is enabled every advised call, logged or
+     * not, is timed with a {@link MethodEvent} if a recording enables it. On
+     * a JVM without Java Flight Recorder no event is emitted.
+     *
+     * @param flightRecorderEvents true to emit the events.
+     */
+    public void setFlightRecorderEvents(boolean flightRecorderEvents) {
+        this.flightRecorderEvents = flightRecorderEvents;
+    }
+
+    /**
+     * @return the cache of the text of the logged values, or null.
+     */
+    public RenderCache getRenderCache() {
+        return messageCache.getRenderCache();
+    }
+
+    /**
+     * Sets a cache for the text of the logged values of some immutable types,
+     * so they are not rendered again on every call. It is used by the methods
+     * advised for the first time after it is set.
+     *
+     * @param renderCache the cache, or null to render every value.
+     */
+    public void setRenderCache(RenderCache renderCache) {
+        messageCache.setRenderCache(renderCache);
+    }
+
+    /**
+     * @return true if the statistics of the advised methods are recorded.
+     */
+    public boolean isStatisticsEnabled() {
+        return statisticsEnabled;
+    }
+
+    /**
+     * @param statisticsEnabled true to record the statistics of the advised
+     * methods.
+     */
+    public void setStatisticsEnabled(boolean statisticsEnabled) {
+        this.statisticsEnabled = statisticsEnabled;
+    }
+
+    /**
+     * @return the statistics of every advised method recorded so far.
+     */
+    public Map<Method, StatisticsSnapshot> getStatistics() {
+        return getStatistics(false);
+    }
+
+    /**
+     * Returns the statistics of every advised method and starts over.
+     *
+     * @return the statistics recorded since the last reset.
+     */
+    public Map<Method, StatisticsSnapshot> getStatisticsAndReset() {
+        return getStatistics(true);
+    }
+
+    /**
+     * Emits the log messages from a {@link Logging} annotation: the enter
+     * message using the method call's parameter list as the formatting
+     * parameters, then the return message using the method's return value, or
+     * the exception message including the thrown exception. When the method is
+     * {@link Logging#timed() timed} the elapsed time is added to the return and
+     * exception messages. When it is a {@link Logging#batchScope() batch scope}
+     * the dispatcher is flushed at the end, even if the method is not logged.
+     * When the method returns a {@link java.util.concurrent.CompletionStage}
+     * the return or exception message is emitted when the stage completes.
      *
      * @param call the method call being intercepted.
      * @param logAnnotation the log annotation.
+     * @return the value returned by the method.
+     * @throws Throwable the exception thrown by the method.
      */
-    @AfterThrowing(pointcut = "execution(* *(..)) and @annotation(logAnnotation)", throwing = "exception", argNames = "logAnnotation, exception")
-    public void logException(JoinPoint call, Logging logAnnotation,
-            Throwable exception) {
-        Logger logger = extractLogger(call);
-        final Severity severity = logAnnotation.severity();
-        if (!severity.isEnabled(logger)) {
-            return;
+    @Around(value = "execution(* *(..)) and @annotation(logAnnotation)", argNames = "logAnnotation")
+    public Object logExecution(ProceedingJoinPoint call, Logging logAnnotation) throws Throwable {
+        final JoinPointMetadata metadata = messageCache.getMetadata((MethodSignature) call.getSignature(), logAnnotation);
+        final boolean enabled = metadata.isEnabled() && metadata.tryAcquire();
+        final MethodStatistics statistics = statisticsEnabled ? metadata.getStatistics() : null;
+        final boolean batchScope = metadata.getPlan().isBatchScope();
+        final Object event = flightRecorderEvents ? MethodEvents.create() : null;
+        if (!enabled && statistics == null && !batchScope && event == null) {
+            return call.proceed();
+        }
+        final LogDispatcher dispatcher = this.effectiveDispatcher;
+        final CallStack calls = enabled && callTracing ? CallStack.enter() : null;
+        final ExceptionDeduplicator deduplicator = enabled ? exceptionDeduplicator : null;
+        if (deduplicator != null) {
+            deduplicator.enter();
+        }
+        try {
+            if (enabled) {
+                metadata.logBefore(dispatcher, call.getArgs());
+            }
+            final boolean measured = statistics != null || metadata.getPlan().isTimed();
+            final long startTime = measured ? System.nanoTime() : 0L;
+            final Object returnValue;
+            if (event != null) {
+                MethodEvents.begin(event);
+            }
+            try {
+                returnValue = call.proceed();
+            } catch (Throwable exception) {
+                if (event != null) {
+                    MethodEvents.complete(event, metadata, call.getArgs(), exception);
+                }
+                final long elapsed = measured ? System.nanoTime() - startTime : 0L;
+                if (statistics != null) {
+                    statistics.recordError(elapsed);
+                }
+                if (enabled) {
+                    metadata.logException(dispatcher, deduplicator, exception, elapsed);
+                }
+                throw exception;
+            }
+            if (returnValue instanceof CompletionStage && metadata.isAsync()) {
+                if (event != null) {
+                    final Object[] args = call.getArgs();
+                    ((CompletionStage<?>) returnValue).whenComplete((value, failure)
+                            -> MethodEvents.complete(event, metadata, args, JoinPointMetadata.cause(failure)));
+                }
+                metadata.logCompletion((CompletionStage<?>) returnValue, dispatcher, deduplicator, statistics,
+                        enabled, startTime, calls == null ? null : CallStack.currentSpan());
+                return returnValue;
+            }
+            if (event != null) {
+                MethodEvents.complete(event, metadata, call.getArgs(), null);
+            }
+            final long elapsed = measured ? System.nanoTime() - startTime : 0L;
+            if (statistics != null) {
+                statistics.recordSuccess(elapsed);
+            }
+            if (enabled) {
+                metadata.logReturn(dispatcher, returnValue, elapsed);
+            }
+            return returnValue;
+        } finally {
+            if (calls != null) {
+                calls.exit();
+            }
+            if (deduplicator != null) {
+                deduplicator.exit();
+            }
+            if (batchScope) {
+                dispatcher.endBatch();
+            }
         }
-        MethodSignature signature = (MethodSignature) call.getSignature();
-        Annotation[][] annotations = signature.getMethod().getParameterAnnotations();
-        String methodName = signature.getName();
-        String message = messageCache.getMessage(MessageType.EXCEPTION, logAnnotation, methodName, annotations);
-        severity.logException(logger, message, methodName, exception);
     }
 
     /**
-     * Extract the logger for the specific class of the poincut
+     * Emits the log messages of the public methods of a type annotated with
+     * {@link Logging}, as {@link #logExecution(ProceedingJoinPoint, Logging)}.
+     * The methods annotated themselves are left to that advice, so their own
+     * annotation is used.
      *
-     * @param call
-     * @return
+     * @param call the method call being intercepted.
+     * @param logAnnotation the log annotation of the type.
+     * @return the value returned by the method.
+     * @throws Throwable the exception thrown by the method.
      */
-    private Logger extractLogger(JoinPoint call) {
-        Class<?> declaringType;
-        Signature signature;
-        Logger logger;
-
-        signature = call.getSignature();
-        declaringType = signature.getDeclaringType();
-        logger = LoggerFactory.getLogger(declaringType);
+    @Around(value = "execution(public * *(..)) and @within(logAnnotation) and !@annotation(es.frnd.logging.Logging)",
+            argNames = "logAnnotation")
+    public Object logTypeExecution(ProceedingJoinPoint call, Logging logAnnotation) throws Throwable {
+        return logExecution(call, logAnnotation);
+    }
 
-        return logger;
+    private Map<Method, StatisticsSnapshot> getStatistics(boolean reset) {
+        Map<Method, StatisticsSnapshot> result = new HashMap<Method, StatisticsSnapshot>();
+        for (JoinPointMetadata metadata : messageCache.getAllMetadata()) {
+            MethodStatistics statistics = metadata.getRecordedStatistics();
+            if (statistics != null) {
+                result.put(metadata.getMethod(), reset ? statistics.snapshotAndReset() : statistics.snapshot());
+            }
+        }
+        return result;
     }
 }
@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Invocation count, error count and latency distribution of an advised method.
+ *
+ * The latencies are kept in a histogram with logarithmic buckets, each power of
+ * two split in {@value #SUB_BUCKETS} linear sub-buckets, so the recorded
+ * values keep a relative precision of about 6%. Every bucket is a
+ * {@link LongAdder} created on its first hit, so recording does not allocate
+ * once the method is warm and concurrent threads do not contend on a single
+ * counter.
+ *
+ * @author fernando
+ */
+public final class MethodStatistics {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Enough buckets for any positive long: the highest power of two is 62.
+     */
+    static final int BUCKETS = (62 - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicReferenceArray<LongAdder> buckets = new AtomicReferenceArray<LongAdder>(BUCKETS);
+    private final LongAdder errors = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * Records a successful invocation.
+     *
+     * @param elapsed the execution time in nanoseconds.
+     */
+    public void recordSuccess(long elapsed) {
+        record(elapsed);
+    }
+
+    /**
+     * Records an invocation that threw an exception.
+     *
+     * @param elapsed the execution time in nanoseconds.
+     */
+    public void recordError(long elapsed) {
+        errors.increment();
+        record(elapsed);
+    }
+
+    /**
+     * @return the statistics recorded so far.
+     */
+    public StatisticsSnapshot snapshot() {
+        return snapshot(false);
+    }
+
+    /**
+     * Returns the statistics recorded so far and starts over. Invocations
+     * recorded while the snapshot is taken may end up in this snapshot or in
+     * the next one, but are never lost.
+     *
+     * @return the statistics recorded since the last reset.
+     */
+    public StatisticsSnapshot snapshotAndReset() {
+        return snapshot(true);
+    }
+
+    private void record(long elapsed) {
+        if (elapsed < 0) {
+            elapsed = 0;
+        }
+        int index = bucketIndex(elapsed);
+        LongAdder bucket = buckets.get(index);
+        if (bucket == null) {
+            buckets.compareAndSet(index, null, new LongAdder());
+            bucket = buckets.get(index);
+        }
+        bucket.increment();
+        max.accumulate(elapsed);
+    }
+
+    private StatisticsSnapshot snapshot(boolean reset) {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            LongAdder bucket = buckets.get(i);
+            if (bucket != null) {
+                counts[i] = reset ? bucket.sumThenReset() : bucket.sum();
+            }
+        }
+        long errorCount = reset ? errors.sumThenReset() : errors.sum();
+        long maxValue = reset ? max.getThenReset() : max.get();
+        return new StatisticsSnapshot(counts, errorCount, maxValue);
+    }
+
+    /**
+     * @param value a positive value.
+     * @return the index of the bucket for the value.
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param index the index of a bucket.
+     * @return the highest value that falls in the bucket.
+     */
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of the text of logged values, for immutable types logged
+ * over and over again, such as ids, UUIDs or configuration keys. Only the
+ * values of the types given when the cache is created, or of their subtypes,
+ * are cached, and they are looked up by {@link Object#equals(Object)}, so the
+ * types must be immutable and their text must only depend on what they are
+ * equal by.
+ *
+ * The cache is split in segments by the hash of the values. Lookups do not
+ * lock, and a miss only locks its segment to add the new text, evicting with
+ * the CLOCK algorithm when the segment is full: the hand skips, and clears,
+ * the entries read since it last passed over them.
+ *
+ * @author fernando
+ */
+public final class RenderCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Class<?>[] types;
+    private final ClassValue<Boolean> cached = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            if (Throwable.class.isAssignableFrom(type)) {
+                return Boolean.FALSE;
+            }
+            for (Class<?> cachedType : types) {
+                if (cachedType.isAssignableFrom(type)) {
+                    return Boolean.TRUE;
+                }
+            }
+            return Boolean.FALSE;
+        }
+    };
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity the maximum number of cached values.
+     * @param types the immutable types whose values are cached.
+     */
+    public RenderCache(int capacity, Class<?>... types) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive: " + capacity);
+        }
+        this.types = types.clone();
+        int count = Math.min(SEGMENTS, Integer.highestOneBit(capacity));
+        int segmentCapacity = (capacity + count - 1) / count;
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * @param type a type of logged values.
+     * @return true if the values of the type are cached.
+     */
+    public boolean isCached(Class<?> type) {
+        return cached.get(type);
+    }
+
+    /**
+     * Returns the text of a value of a cached type, from the cache or rendered
+     * with {@link Object#toString()} and added to the cache. Any other value is
+     * returned as is, to be rendered when the message is formatted.
+     *
+     * @param value a logged value.
+     * @return the text of the value, or the value itself.
+     */
+    public Object render(Object value) {
+        if (value == null || !cached.get(value.getClass())) {
+            return value;
+        }
+        int hash = value.hashCode();
+        Segment segment = segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+        Entry entry = segment.entries.get(value);
+        if (entry != null) {
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            hits.increment();
+            return entry.text;
+        }
+        misses.increment();
+        final String text;
+        try {
+            text = value.toString();
+        } catch (RuntimeException e) {
+            return value;
+        }
+        if (text != null) {
+            segment.add(value, text);
+        }
+        return text;
+    }
+
+    /**
+     * @return the number of values found in the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of values rendered because they were not in the cache.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of values in the cache.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.entries.size();
+        }
+        return size;
+    }
+
+    private static final class Entry {
+
+        final Object key;
+        final String text;
+        /**
+         * Set when the entry is read, cleared when the clock hand passes over
+         * it. Racy updates only make the eviction less accurate.
+         */
+        boolean referenced;
+
+        Entry(Object key, String text) {
+            this.key = key;
+            this.text = text;
+        }
+    }
+
+    private static final class Segment {
+
+        final ConcurrentHashMap<Object, Entry> entries;
+        /**
+         * The clock, guarded by the segment.
+         */
+        final Entry[] clock;
+        int size;
+        int hand;
+
+        Segment(int capacity) {
+            entries = new ConcurrentHashMap<Object, Entry>(capacity * 2);
+            clock = new Entry[capacity];
+        }
+
+        synchronized void add(Object key, String text) {
+            if (entries.containsKey(key)) {
+                return;
+            }
+            Entry entry = new Entry(key, text);
+            if (size < clock.length) {
+                clock[size++] = entry;
+            } else {
+                while (clock[hand].referenced) {
+                    clock[hand].referenced = false;
+                    hand = (hand + 1) % clock.length;
+                }
+                entries.remove(clock[hand].key);
+                clock[hand] = entry;
+                hand = (hand + 1) % clock.length;
+            }
+            entries.put(key, entry);
+        }
+    }
+}
@@ -23,13 +23,15 @@
  */
 package es.frnd.logging;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import org.slf4j.Logger;
 
 /**
  * Indicates the severity of the message used by {@link Logging}.
+ *
+ * The constants have no bodies of their own: every method is a switch over the
+ * constant, so a call on a severity always reaches the same method, whatever
+ * severities the application uses, and the JIT can inline it down to the level
+ * check and the {@link Logger} overload of that severity.
  */
 public enum Severity {
 
@@ -37,120 +39,197 @@ public enum Severity {
      * Log messages will be emitted using the {@link Logger#trace(String)}
      * variants.
      */
-    TRACE() {
-        @Override
-        void log(Logger l, String message, String methodName, Object... parameters) {
-            l.trace(message, mergeMethodNameWithParameters(methodName, parameters));
-        }
-
-        @Override
-        void logException(Logger l, String message, String methodName, Throwable exception) {
-            l.trace(message, new Object[] {methodName, exception});
-        }
-
-        @Override
-        boolean isEnabled(Logger l) {
-            return l.isTraceEnabled();
-        }
-    },
+    TRACE,
     /**
      * Log messages will be emitted using the {@link Logger#debug(String)}
      * variants.
      */
-    DEBUG() {
-        @Override
-        void log(Logger l, String message, String methodName, Object... parameters) {
-            l.debug(message, mergeMethodNameWithParameters(methodName, parameters));
-        }
-
-        @Override
-        void logException(Logger l, String message, String methodName, Throwable exception) {
-            l.debug(message, new Object[] {methodName, exception});
-        }
-
-        @Override
-        boolean isEnabled(Logger l) {
-            return l.isDebugEnabled();
-        }
-    },
+    DEBUG,
     /**
      * Log messages will be emitted using the {@link Logger#info(String)}
      * variants.
      */
-    INFO {
-        @Override
-        void log(Logger l, String message, String methodName, Object... parameters) {
-            l.info(message, mergeMethodNameWithParameters(methodName, parameters));
-        }
-
-        @Override
-        void logException(Logger l, String message, String methodName, Throwable exception) {
-            l.info(message, new Object[] {methodName, exception});
-        }
-
-        @Override
-        boolean isEnabled(Logger l) {
-            return l.isInfoEnabled();
-        }
-    },
+    INFO,
     /**
      * Log messages will be emitted using the {@link Logger#warn(String)}
      * variants.
      */
-    WARN {
-        @Override
-        void log(Logger l, String message, String methodName, Object... parameters) {
-            l.warn(message, mergeMethodNameWithParameters(methodName, parameters));
-        }
-
-        @Override
-        void logException(Logger l, String message, String methodName, Throwable exception) {
-            l.warn(message, new Object[] {methodName, exception});
-        }
-
-        @Override
-        boolean isEnabled(Logger l) {
-            return l.isWarnEnabled();
-        }
-    },
+    WARN,
     /**
      * Log messages will be emitted using the {@link Logger#error(String)}
      * variants.
      */
-    ERROR {
-        @Override
-        void log(Logger l, String message, String methodName, Object... parameters) {
-            l.error(message, mergeMethodNameWithParameters(methodName, parameters));
-        }
-
-        @Override
-        void logException(Logger l, String message, String methodName, Throwable exception) {
-            l.error(message, new Object[] {methodName, exception});
-        }
-
-        @Override
-        boolean isEnabled(Logger l) {
-            return l.isErrorEnabled();
-        }
-    };
+    ERROR;
 
     /**
      * Log a normal message at the appropriate level.
      *
      * @param l the logger to emit messages to.
      * @param message the log message (template) to emit.
+     * @param methodName the name of the method, the first template value.
      * @param parameters values to fill the message template with.
      */
-    abstract void log(Logger l, String message, String methodName, Object... parameters);
+    void log(Logger l, String message, String methodName, Object... parameters) {
+        switch (parameters.length) {
+            case 0:
+                emit(l, message, methodName);
+                break;
+            case 1:
+                emit(l, message, methodName, parameters[0]);
+                break;
+            default:
+                emit(l, message, mergeMethodNameWithParameters(methodName, parameters));
+        }
+    }
 
     /**
      * Log an exceptional message at the appropriate level.
      *
      * @param l the logger to emit messages to.
      * @param message the log message to emit.
+     * @param methodName the name of the method, the first template value.
      * @param exception the exception to log.
      */
-    abstract void logException(Logger l, String message, String methodName, Throwable exception);
+    void logException(Logger l, String message, String methodName, Throwable exception) {
+        emit(l, message, methodName, exception);
+    }
+
+    /**
+     * Emits a message with a single template value, without creating an
+     * array.
+     *
+     * @param l the logger to emit messages to.
+     * @param message the log message (template) to emit.
+     * @param argument the value to fill the message template with.
+     */
+    void emit(Logger l, String message, Object argument) {
+        switch (this) {
+            case TRACE:
+                l.trace(message, argument);
+                break;
+            case DEBUG:
+                l.debug(message, argument);
+                break;
+            case INFO:
+                l.info(message, argument);
+                break;
+            case WARN:
+                l.warn(message, argument);
+                break;
+            case ERROR:
+                l.error(message, argument);
+                break;
+        }
+    }
+
+    /**
+     * Emits a message with two template values, without creating an array.
+     *
+     * @param l the logger to emit messages to.
+     * @param message the log message (template) to emit.
+     * @param first the first value to fill the message template with.
+     * @param second the second value to fill the message template with.
+     */
+    void emit(Logger l, String message, Object first, Object second) {
+        switch (this) {
+            case TRACE:
+                l.trace(message, first, second);
+                break;
+            case DEBUG:
+                l.debug(message, first, second);
+                break;
+            case INFO:
+                l.info(message, first, second);
+                break;
+            case WARN:
+                l.warn(message, first, second);
+                break;
+            case ERROR:
+                l.error(message, first, second);
+                break;
+        }
+    }
+
+    /**
+     * Emits a message with the template values already packed in an array.
+     *
+     * @param l the logger to emit messages to.
+     * @param message the log message (template) to emit.
+     * @param arguments the values to fill the message template with.
+     */
+    void emit(Logger l, String message, Object[] arguments) {
+        switch (this) {
+            case TRACE:
+                l.trace(message, arguments);
+                break;
+            case DEBUG:
+                l.debug(message, arguments);
+                break;
+            case INFO:
+                l.info(message, arguments);
+                break;
+            case WARN:
+                l.warn(message, arguments);
+                break;
+            case ERROR:
+                l.error(message, arguments);
+                break;
+        }
+    }
+
+    /**
+     * Emits a message that is already formatted.
+     *
+     * @param l the logger to emit messages to.
+     * @param message the formatted message.
+     */
+    void emit(Logger l, String message) {
+        switch (this) {
+            case TRACE:
+                l.trace(message);
+                break;
+            case DEBUG:
+                l.debug(message);
+                break;
+            case INFO:
+                l.info(message);
+                break;
+            case WARN:
+                l.warn(message);
+                break;
+            case ERROR:
+                l.error(message);
+                break;
+        }
+    }
+
+    /**
+     * Emits a message that is already formatted, with the stack trace of an
+     * exception.
+     *
+     * @param l the logger to emit messages to.
+     * @param message the formatted message.
+     * @param exception the exception to print.
+     */
+    void emit(Logger l, String message, Throwable exception) {
+        switch (this) {
+            case TRACE:
+                l.trace(message, exception);
+                break;
+            case DEBUG:
+                l.debug(message, exception);
+                break;
+            case INFO:
+                l.info(message, exception);
+                break;
+            case WARN:
+                l.warn(message, exception);
+                break;
+            case ERROR:
+                l.error(message, exception);
+                break;
+        }
+    }
 
     /**
      * Test if this severity is enabled in the logger.
@@ -158,19 +237,34 @@ public enum Severity {
      * @param l the logger to check the severity.
      * @return
      */
-    abstract boolean isEnabled(Logger l);
+    boolean isEnabled(Logger l) {
+        switch (this) {
+            case TRACE:
+                return l.isTraceEnabled();
+            case DEBUG:
+                return l.isDebugEnabled();
+            case INFO:
+                return l.isInfoEnabled();
+            case WARN:
+                return l.isWarnEnabled();
+            case ERROR:
+                return l.isErrorEnabled();
+            default:
+                throw new AssertionError(this);
+        }
+    }
 
     /**
-     * Creates a list that contains the method name and the parameters.
+     * Creates an array that contains the method name and the parameters.
      * 
      * @param methodName
      * @param parameters
      * @return 
      */
     private static Object[] mergeMethodNameWithParameters(String methodName, Object[] parameters) {
-        List<Object> mergedList = new ArrayList<Object>(parameters.length + 1);
-        mergedList.add(methodName);
-        Collections.addAll(mergedList, parameters);
-        return mergedList.toArray();
+        Object[] merged = new Object[parameters.length + 1];
+        merged[0] = methodName;
+        System.arraycopy(parameters, 0, merged, 1, parameters.length);
+        return merged;
     }
 }
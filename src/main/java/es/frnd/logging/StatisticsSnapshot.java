@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+/**
+ * The statistics of an advised method at a point in time, as returned by
+ * {@link MethodStatistics}.
+ *
+ * @author fernando
+ */
+public final class StatisticsSnapshot {
+
+    private final long[] counts;
+    private final long invocations;
+    private final long errors;
+    private final long max;
+
+    StatisticsSnapshot(long[] counts, long errors, long max) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        this.counts = counts;
+        this.invocations = total;
+        this.errors = errors;
+        this.max = max;
+    }
+
+    /**
+     * @return the number of invocations of the method.
+     */
+    public long getInvocations() {
+        return invocations;
+    }
+
+    /**
+     * @return the number of invocations that threw an exception.
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the longest execution time, in nanoseconds.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return the median execution time, in nanoseconds.
+     */
+    public long getP50() {
+        return getPercentile(50);
+    }
+
+    /**
+     * @return the 99th percentile of the execution time, in nanoseconds.
+     */
+    public long getP99() {
+        return getPercentile(99);
+    }
+
+    /**
+     * Returns the execution time under which the given percentage of the
+     * invocations fall. The value is the upper bound of a histogram bucket, so
+     * it can be up to 6% higher than the recorded one, but never higher than
+     * {@link #getMax()}.
+     *
+     * @param percentile the percentage, between 0 and 100.
+     * @return the execution time, in nanoseconds, or 0 if there are no
+     * invocations.
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100: " + percentile);
+        }
+        if (invocations == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * invocations));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(MethodStatistics.highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "invocations=" + invocations + ", errors=" + errors + ", p50=" + getP50() + "ns, p99="
+                + getP99() + "ns, max=" + max + "ns";
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import org.slf4j.Logger;
+
+/**
+ * A {@link LogDispatcher} that formats the messages on the calling thread with
+ * the templates compiled in the {@link LogPlan}, and hands the backend the
+ * finished text. The pattern is not parsed again for every message and the
+ * text is built in a buffer reused by the thread.
+ *
+ * The backend receives a plain message, so appenders that read the template
+ * values of the event see none. A trailing exception that no placeholder
+ * consumes is still passed as the exception of the event, as SLF4J does.
+ *
+ * @author fernando
+ */
+public class TemplateLogDispatcher implements LogDispatcher {
+
+    @Override
+    public void dispatch(Severity severity, Logger logger, MessageTemplate template, Object argument) {
+        if (severity.isEnabled(logger)) {
+            emit(severity, logger, template.format(argument), template, 1, argument);
+        }
+    }
+
+    @Override
+    public void dispatch(Severity severity, Logger logger, MessageTemplate template, Object first, Object second) {
+        if (severity.isEnabled(logger)) {
+            emit(severity, logger, template.format(first, second), template, 2, second);
+        }
+    }
+
+    @Override
+    public void dispatch(Severity severity, Logger logger, MessageTemplate template, Object[] arguments) {
+        if (severity.isEnabled(logger)) {
+            Object last = arguments.length == 0 ? null : arguments[arguments.length - 1];
+            emit(severity, logger, template.format(arguments), template, arguments.length, last);
+        }
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate template, Object first, long second) {
+        if (severity.isEnabled(logger)) {
+            severity.emit(logger, template.formatLong(first, second));
+        }
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate template, Object first, Object second, long third) {
+        if (severity.isEnabled(logger)) {
+            severity.emit(logger, template.formatLong(first, second, third));
+        }
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate template, Object first, Object second, long third,
+            Throwable exception) {
+        if (severity.isEnabled(logger)) {
+            emit(severity, logger, template.formatLong(first, second, third), template, 4, exception);
+        }
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate template, CallSpan span, Object first,
+            Object second, long third) {
+        if (severity.isEnabled(logger)) {
+            severity.emit(logger, template.formatLong(span, first, second, third));
+        }
+    }
+
+    @Override
+    public void dispatchLong(Severity severity, Logger logger, MessageTemplate template, CallSpan span, Object first,
+            Object second, long third, Throwable exception) {
+        if (severity.isEnabled(logger)) {
+            emit(severity, logger, template.formatLong(span, first, second, third), template, 5, exception);
+        }
+    }
+
+    private static void emit(Severity severity, Logger logger, String text, MessageTemplate template, int count, Object last) {
+        if (template.getSlots() < count && last instanceof Throwable) {
+            severity.emit(logger, text, (Throwable) last);
+        } else {
+            severity.emit(logger, text);
+        }
+    }
+}
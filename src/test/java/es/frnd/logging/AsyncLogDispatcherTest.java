@@ -0,0 +1,203 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import es.frnd.logging.AsyncLogDispatcher.BackPressure;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+
+/**
+ *
+ * @author fernando
+ */
+public class AsyncLogDispatcherTest {
+
+    @Mock
+    private Logger l;
+    private AsyncLogDispatcher instance;
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    public AsyncLogDispatcherTest() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Before
+    public void setUp() {
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                blocked.countDown();
+                released.await(10, TimeUnit.SECONDS);
+                return null;
+            }
+        }).when(l).info(Mockito.eq("blocking {}"), (Object) Mockito.any());
+    }
+
+    @After
+    public void tearDown() {
+        released.countDown();
+        if (instance != null) {
+            instance.shutdown();
+        }
+    }
+
+    /**
+     * Test of dispatch method, of class AsyncLogDispatcher.
+     */
+    @Test
+    public void testDispatch() {
+        System.out.println("dispatch");
+        instance = new AsyncLogDispatcher(16, BackPressure.BLOCK);
+
+        Object[] arguments = new Object[]{"method", 1, 2};
+        for (int i = 0; i < 100; i++) {
+            instance.dispatch(Severity.DEBUG, l, MessageTemplate.compile("one {}"), "method");
+            instance.dispatch(Severity.DEBUG, l, MessageTemplate.compile("two {} {}"), "method", i);
+            instance.dispatch(Severity.DEBUG, l, MessageTemplate.compile("three {} {} {}"), arguments);
+        }
+        instance.shutdown();
+
+        Mockito.verify(l, Mockito.times(100)).debug("one {}", "method");
+        Mockito.verify(l, Mockito.times(100)).debug(Mockito.eq("two {} {}"), Mockito.eq("method"), Mockito.any());
+        Mockito.verify(l, Mockito.times(100)).debug("three {} {} {}", arguments);
+        assertEquals(0, instance.getDroppedCount());
+    }
+
+    /**
+     * Test of dispatch methods with a primitive value, of class
+     * AsyncLogDispatcher.
+     */
+    @Test
+    public void testDispatchPrimitive() {
+        System.out.println("dispatchPrimitive");
+        instance = new AsyncLogDispatcher(16, BackPressure.BLOCK);
+        Exception exception = new Exception("failed");
+
+        instance.dispatchLong(Severity.DEBUG, l, MessageTemplate.compile("count {} {}"), "method", 1000L);
+        instance.dispatchLong(Severity.DEBUG, l, MessageTemplate.compile("elapsed {} {} {}"), "method", "result", 2000L);
+        instance.dispatchLong(Severity.DEBUG, l, MessageTemplate.compile("failed {} {} {}"), "method", exception, 3000L, exception);
+        CallSpan span = new CallSpan(1L, 0L, 1L, 0);
+        instance.dispatchLong(Severity.DEBUG, l, MessageTemplate.compile("{} elapsed {} {} {}"), span, "method", "result", 4000L);
+        instance.dispatchLong(Severity.DEBUG, l, MessageTemplate.compile("{} failed {} {} {}"), span, "method", exception, 5000L,
+                exception);
+        instance.shutdown();
+
+        Mockito.verify(l).debug("count {} {}", "method", 1000L);
+        Mockito.verify(l).debug("elapsed {} {} {}", new Object[]{"method", "result", 2000L});
+        Mockito.verify(l).debug("failed {} {} {}", new Object[]{"method", exception, 3000L, exception});
+        Mockito.verify(l).debug("{} elapsed {} {} {}", new Object[]{span, "method", "result", 4000L});
+        Mockito.verify(l).debug("{} failed {} {} {}", new Object[]{span, "method", exception, 5000L, exception});
+    }
+
+    /**
+     * Test of dispatch method with the DROP policy, of class
+     * AsyncLogDispatcher.
+     */
+    @Test
+    public void testDispatchDrop() throws InterruptedException {
+        System.out.println("dispatchDrop");
+        instance = new AsyncLogDispatcher(2, BackPressure.DROP);
+
+        instance.dispatch(Severity.INFO, l, MessageTemplate.compile("blocking {}"), "method");
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            instance.dispatch(Severity.INFO, l, MessageTemplate.compile("{} {}"), "method", i);
+        }
+        assertEquals(3, instance.getDroppedCount());
+        released.countDown();
+        instance.shutdown();
+
+        Mockito.verify(l).info("{} {}", "method", 0);
+        Mockito.verify(l).info("{} {}", "method", 1);
+        Mockito.verify(l, Mockito.never()).info("{} {}", "method", 4);
+    }
+
+    /**
+     * Test of dispatch method with the DROP_OLDEST policy, of class
+     * AsyncLogDispatcher.
+     */
+    @Test
+    public void testDispatchDropOldest() throws InterruptedException {
+        System.out.println("dispatchDropOldest");
+        instance = new AsyncLogDispatcher(2, BackPressure.DROP_OLDEST);
+
+        instance.dispatch(Severity.INFO, l, MessageTemplate.compile("blocking {}"), "method");
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            instance.dispatch(Severity.INFO, l, MessageTemplate.compile("{} {}"), "method", i);
+        }
+        assertEquals(3, instance.getDroppedCount());
+        released.countDown();
+        instance.shutdown();
+
+        Mockito.verify(l, Mockito.never()).info("{} {}", "method", 0);
+        Mockito.verify(l).info("{} {}", "method", 3);
+        Mockito.verify(l).info("{} {}", "method", 4);
+    }
+
+    /**
+     * Test of shutdown method, of class AsyncLogDispatcher.
+     */
+    @Test
+    public void testShutdown() {
+        System.out.println("shutdown");
+        instance = new AsyncLogDispatcher(4, BackPressure.BLOCK);
+
+        instance.shutdown();
+        instance.dispatch(Severity.WARN, l, MessageTemplate.compile("{}"), "method");
+
+        Mockito.verify(l).warn("{}", "method");
+    }
+
+    /**
+     * Test of dispatch method with a failing appender, of class
+     * AsyncLogDispatcher.
+     */
+    @Test
+    public void testDispatchFailing() {
+        System.out.println("dispatchFailing");
+        instance = new AsyncLogDispatcher(16, BackPressure.BLOCK);
+        Mockito.doThrow(new AssertionError("appender")).when(l).error("{}", "failing");
+        Mockito.doThrow(new IllegalStateException("appender")).when(l).error("{}", "throwing");
+
+        instance.dispatch(Severity.ERROR, l, MessageTemplate.compile("{}"), "failing");
+        instance.dispatch(Severity.ERROR, l, MessageTemplate.compile("{}"), "throwing");
+        instance.dispatch(Severity.ERROR, l, MessageTemplate.compile("{}"), "method");
+        instance.shutdown();
+
+        Mockito.verify(l).error("{}", "method");
+        assertEquals(2, instance.getFailureCount());
+    }
+}
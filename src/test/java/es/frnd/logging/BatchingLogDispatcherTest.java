@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+
+/**
+ *
+ * @author fernando
+ */
+public class BatchingLogDispatcherTest {
+
+    private static final String NL = System.lineSeparator();
+
+    /**
+     * Test of dispatch and flush methods, of class BatchingLogDispatcher.
+     */
+    @Test
+    public void testFlush() {
+        System.out.println("flush");
+
+        Logger l = Mockito.mock(Logger.class);
+        Logger other = Mockito.mock(Logger.class);
+        Mockito.when(l.isInfoEnabled()).thenReturn(true);
+        Mockito.when(other.isInfoEnabled()).thenReturn(true);
+        BatchingLogDispatcher instance = new BatchingLogDispatcher(64, 1, TimeUnit.HOURS);
+        Exception exception = new Exception("failed");
+
+        instance.dispatch(Severity.INFO, l, MessageTemplate.compile("Calling method {} with args"), "save");
+        instance.dispatch(Severity.INFO, l, MessageTemplate.compile("Returning method {} with {}"), "save", 42);
+        instance.dispatchLong(Severity.INFO, l, MessageTemplate.compile("Returning method {} with {} in {} ns"), "save", null, 1234L);
+        instance.dispatch(Severity.INFO, other, MessageTemplate.compile("Calling method {} with args"), "load");
+        instance.dispatch(Severity.INFO, l, MessageTemplate.compile("Method {} failed"), "save", exception);
+        instance.dispatch(Severity.DEBUG, l, MessageTemplate.compile("Calling method {} with args"), "hidden");
+        Mockito.verify(l, Mockito.never()).info(Mockito.anyString());
+        Mockito.verify(other, Mockito.never()).info(Mockito.anyString());
+
+        instance.flush();
+        instance.shutdown();
+
+        Mockito.verify(l).info("Calling method save with args" + NL + "Returning method save with 42" + NL
+                + "Returning method save with null in 1234 ns");
+        Mockito.verify(other).info("Calling method load with args");
+        Mockito.verify(l).info("Method save failed", exception);
+        Mockito.verify(l, Mockito.never()).debug(Mockito.anyString());
+    }
+
+    /**
+     * Test of dispatch method when the batch is full or expires, of class
+     * BatchingLogDispatcher.
+     */
+    @Test
+    public void testDispatchFull() throws InterruptedException {
+        System.out.println("dispatchFull");
+
+        Logger l = Mockito.mock(Logger.class);
+        Mockito.when(l.isDebugEnabled()).thenReturn(true);
+        BatchingLogDispatcher instance = new BatchingLogDispatcher(2, 10, TimeUnit.MILLISECONDS);
+
+        instance.dispatch(Severity.DEBUG, l, MessageTemplate.compile("Calling method {} with args"), "first");
+        instance.dispatch(Severity.DEBUG, l, MessageTemplate.compile("Calling method {} with args"), "second");
+        Mockito.verify(l).debug("Calling method first with args" + NL + "Calling method second with args");
+
+        instance.dispatch(Severity.DEBUG, l, MessageTemplate.compile("Calling method {} with args"), "third");
+        Mockito.verify(l, Mockito.timeout(1000)).debug("Calling method third with args");
+        instance.shutdown();
+    }
+
+    /**
+     * Test of dispatch method while a batch is emitted and after the
+     * shutdown, of class BatchingLogDispatcher.
+     */
+    @Test
+    public void testDispatchReentrant() {
+        System.out.println("dispatchReentrant");
+
+        final Logger l = Mockito.mock(Logger.class);
+        Logger appender = Mockito.mock(Logger.class);
+        Mockito.when(l.isInfoEnabled()).thenReturn(true);
+        Mockito.when(appender.isInfoEnabled()).thenReturn(true);
+        final BatchingLogDispatcher instance = new BatchingLogDispatcher(64, 1, TimeUnit.HOURS);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                instance.dispatch(Severity.INFO, l, MessageTemplate.compile("Appending {}"), "save");
+                instance.flush();
+                return null;
+            }
+        }).when(appender).info(Mockito.anyString());
+
+        instance.dispatch(Severity.INFO, appender, MessageTemplate.compile("Calling method {} with args"), "save");
+        instance.dispatch(Severity.INFO, l, MessageTemplate.compile("Calling method {} with args"), "load");
+        instance.flush();
+
+        Mockito.verify(appender).info("Calling method save with args");
+        InOrder order = Mockito.inOrder(l);
+        order.verify(l).info("Appending save");
+        order.verify(l).info("Calling method load with args");
+
+        instance.shutdown();
+        instance.dispatch(Severity.INFO, l, MessageTemplate.compile("Calling method {} with args"), "late");
+        Mockito.verify(l).info("Calling method late with args");
+    }
+
+    /**
+     * Test of constructor with a delay that is not positive, of class
+     * BatchingLogDispatcher.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorDelay() {
+        System.out.println("constructorDelay");
+
+        new BatchingLogDispatcher(64, 0, TimeUnit.MILLISECONDS);
+    }
+}
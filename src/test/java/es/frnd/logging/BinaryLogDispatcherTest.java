@@ -0,0 +1,225 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author fernando
+ */
+public class BinaryLogDispatcherTest {
+
+    private static final String PREFIX = "\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}\\.\\d{3} ";
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private Logger logger;
+
+    @Before
+    public void setUp() {
+        logger = Mockito.mock(Logger.class);
+        Mockito.when(logger.getName()).thenReturn("com.example.Service");
+    }
+
+    /**
+     * Test of dispatch methods, of class BinaryLogDispatcher, decoded by
+     * EventDecoder.
+     */
+    @Test
+    public void testDispatch() throws IOException {
+        System.out.println("dispatch");
+
+        File file = folder.newFile("events.bin");
+        BinaryLogDispatcher instance = new BinaryLogDispatcher(new MappedFileEventSink(file, 64));
+
+        instance.dispatch(Severity.DEBUG, logger, MessageTemplate.compile("Calling method {} with args"), "save");
+        instance.dispatch(Severity.INFO, logger, MessageTemplate.compile("Returning method {} with {}"), "save", 'x');
+        instance.dispatch(Severity.WARN, logger, MessageTemplate.compile("Calling method {} with args {} {} {} {} {} {}"),
+                new Object[]{"save", 42, 7L, true, 1.5d, null, "café"});
+        instance.dispatch(Severity.ERROR, logger, MessageTemplate.compile("Method {} is trowing an exception: {}"), "save", new IllegalStateException("failed"));
+        instance.dispatchLong(Severity.DEBUG, logger, MessageTemplate.compile("Returning method {} with {} in {} ns"), "save", null, 1234L);
+        instance.close();
+
+        StringBuilder output = new StringBuilder();
+        new EventDecoder().decode(file, output);
+        String[] lines = output.toString().split("\n");
+
+        assertEquals(5, lines.length);
+        Mockito.verify(logger, Mockito.atLeastOnce()).getName();
+        Mockito.verifyNoMoreInteractions(logger);
+        assertTrue(lines[0], lines[0].matches(PREFIX + "DEBUG \\[thread \\d+\\] com.example.Service - Calling method save with args"));
+        assertTrue(lines[1], lines[1].matches(PREFIX + "INFO .* - Returning method save with x"));
+        assertTrue(lines[2], lines[2].matches(PREFIX + "WARN .* - Calling method save with args 42 7 true 1.5 null café"));
+        assertTrue(lines[3], lines[3].matches(PREFIX + "ERROR .* - Method save is trowing an exception: java.lang.IllegalStateException: failed"));
+        assertTrue(lines[4], lines[4].endsWith(" - Returning method save with null in 1234 ns"));
+    }
+
+    /**
+     * Test of dispatch methods with values whose toString() fails, returns
+     * null or logs, of class BinaryLogDispatcher.
+     */
+    @Test
+    public void testDispatchToString() throws IOException {
+        System.out.println("dispatchToString");
+
+        File file = folder.newFile("events.bin");
+        final BinaryLogDispatcher instance = new BinaryLogDispatcher(new MappedFileEventSink(file, 64));
+        Object failing = new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException();
+            }
+        };
+        Object nullText = new Object() {
+            @Override
+            public String toString() {
+                return null;
+            }
+        };
+        Object logging = new Object() {
+            @Override
+            public String toString() {
+                instance.dispatch(Severity.TRACE, logger, MessageTemplate.compile("Nested {}"), "call");
+                return "outer";
+            }
+        };
+
+        instance.dispatch(Severity.INFO, logger, MessageTemplate.compile("Calling method {} with args {} {} {}"),
+                new Object[]{"save", failing, nullText, logging});
+        instance.close();
+
+        StringBuilder output = new StringBuilder();
+        new EventDecoder().decode(file, output);
+        String[] lines = output.toString().split("\n");
+
+        assertEquals(2, lines.length);
+        assertTrue(lines[0], lines[0].endsWith(" - Nested call"));
+        assertTrue(lines[1], lines[1].endsWith(" - Calling method save with args [FAILED toString()] null outer"));
+        assertEquals(0, instance.getFailureCount());
+    }
+
+    /**
+     * Test of dispatch methods with a string that can not be written, of class
+     * BinaryLogDispatcher.
+     */
+    @Test
+    public void testDispatchStringFailing() throws IOException {
+        System.out.println("dispatchStringFailing");
+
+        MemorySink sink = new MemorySink(2);
+        BinaryLogDispatcher instance = new BinaryLogDispatcher(sink);
+
+        instance.dispatch(Severity.DEBUG, logger, MessageTemplate.compile("Calling method {} with args"), "save");
+        instance.dispatch(Severity.DEBUG, logger, MessageTemplate.compile("Calling method {} with args"), "save");
+
+        StringBuilder output = new StringBuilder();
+        new EventDecoder().decode(sink.records(), output);
+        String[] lines = output.toString().split("\n");
+
+        assertEquals(2, lines.length);
+        assertTrue(lines[0], lines[0].endsWith("] [undefined string] - Calling method save with args"));
+        assertTrue(lines[1], lines[1].endsWith("] com.example.Service - Calling method save with args"));
+        assertEquals(1, instance.getFailureCount());
+    }
+
+    /**
+     * Test of decode method with a last record cut short, of class
+     * EventDecoder.
+     */
+    @Test
+    public void testDecodeTruncated() throws IOException {
+        System.out.println("decodeTruncated");
+
+        MemorySink sink = new MemorySink(0);
+        BinaryLogDispatcher instance = new BinaryLogDispatcher(sink);
+        instance.dispatch(Severity.DEBUG, logger, MessageTemplate.compile("Calling method {} with args"), "save");
+        instance.dispatch(Severity.DEBUG, logger, MessageTemplate.compile("Calling method {} with args"), "save");
+        ByteBuffer records = sink.records();
+        records.limit(records.limit() - 3);
+
+        StringBuilder output = new StringBuilder();
+        new EventDecoder().decode(records, output);
+        String[] lines = output.toString().split("\n");
+
+        assertEquals(2, lines.length);
+        assertTrue(lines[0], lines[0].endsWith(" - Calling method save with args"));
+        assertTrue(lines[1], lines[1].matches("\\[truncated record at \\d+\\]"));
+    }
+
+    /**
+     * Test of decode method with a buffer that is not an event file, of class
+     * EventDecoder.
+     */
+    @Test(expected = IOException.class)
+    public void testDecodeInvalid() throws IOException {
+        System.out.println("decodeInvalid");
+
+        new EventDecoder().decode(ByteBuffer.allocate(32), new StringBuilder());
+    }
+
+    /**
+     * Keeps the records in memory, failing the given write.
+     */
+    private static final class MemorySink implements EventSink {
+
+        private final ByteBuffer records = ByteBuffer.allocate(4096);
+        private final int failing;
+        private int writes;
+
+        MemorySink(int failing) {
+            this.failing = failing;
+        }
+
+        @Override
+        public void write(ByteBuffer record) throws IOException {
+            if (++writes == failing) {
+                throw new IOException("Disk full");
+            }
+            records.put(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        ByteBuffer records() {
+            ByteBuffer copy = records.duplicate();
+            copy.flip();
+            return copy;
+        }
+    }
+}
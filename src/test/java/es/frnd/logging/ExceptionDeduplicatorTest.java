@@ -0,0 +1,203 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+
+/**
+ *
+ * @author fernando
+ */
+public class ExceptionDeduplicatorTest {
+
+    /**
+     * Test of occurrence method, of class ExceptionDeduplicator.
+     */
+    @Test
+    public void testOccurrence() throws Exception {
+        System.out.println("occurrence");
+
+        ExceptionDeduplicator instance = new ExceptionDeduplicator(5, 50, TimeUnit.MILLISECONDS);
+        JoinPointMetadata metadata = metadata();
+        LogDispatcher dispatcher = Mockito.mock(LogDispatcher.class);
+        Exception[] repeated = new Exception[4];
+        for (int i = 0; i < repeated.length; i++) {
+            repeated[i] = new IllegalStateException("failed " + i);
+        }
+
+        assertEquals(0L, instance.occurrence(metadata, repeated[0], dispatcher));
+        assertEquals(-1L, instance.occurrence(metadata, repeated[1], dispatcher));
+        assertEquals(-1L, instance.occurrence(metadata, repeated[2], dispatcher));
+        assertEquals(0L, instance.occurrence(metadata, new IllegalArgumentException(), dispatcher));
+        assertEquals(0L, instance.occurrence(metadata(), repeated[2], dispatcher));
+
+        Mockito.verify(dispatcher, Mockito.timeout(1000)).dispatchLong(Severity.DEBUG, metadata.getLogger(),
+                ExceptionDeduplicator.REPEATED, "fail", IllegalStateException.class.getName(), 2L);
+        assertEquals(0L, instance.occurrence(metadata, repeated[3], dispatcher));
+        instance.shutdown();
+        Mockito.verifyNoMoreInteractions(dispatcher);
+    }
+
+    /**
+     * Test of occurrence method with nested calls, of class
+     * ExceptionDeduplicator.
+     */
+    @Test
+    public void testOccurrenceNested() throws Exception {
+        System.out.println("occurrence nested");
+
+        ExceptionDeduplicator instance = new ExceptionDeduplicator(5, 0, TimeUnit.MILLISECONDS);
+        JoinPointMetadata metadata = metadata();
+        LogDispatcher dispatcher = Mockito.mock(LogDispatcher.class);
+        Exception preallocated = new IllegalStateException();
+
+        instance.enter();
+        instance.enter();
+        assertEquals(0L, instance.occurrence(metadata, preallocated, dispatcher));
+        instance.exit();
+        instance.enter();
+        assertEquals(0L, instance.occurrence(metadata, preallocated, dispatcher));
+        instance.exit();
+        assertEquals(-1L, instance.occurrence(metadata, preallocated, dispatcher));
+        instance.exit();
+        instance.enter();
+        assertEquals(0L, instance.occurrence(metadata, preallocated, dispatcher));
+        instance.exit();
+        assertEquals(0L, instance.occurrence(metadata, preallocated, dispatcher));
+        instance.shutdown();
+        Mockito.verifyZeroInteractions(dispatcher);
+    }
+
+    /**
+     * Test of occurrence method while the windows are retired, of class
+     * ExceptionDeduplicator.
+     */
+    @Test
+    public void testOccurrenceConcurrent() throws Exception {
+        System.out.println("occurrence concurrent");
+
+        final ExceptionDeduplicator instance = new ExceptionDeduplicator(0, 1, TimeUnit.MILLISECONDS);
+        final JoinPointMetadata metadata = metadata();
+        final AtomicLong repeats = new AtomicLong();
+        final LogDispatcher dispatcher = Mockito.mock(LogDispatcher.class);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                repeats.addAndGet((Long) invocation.getArguments()[5]);
+                return null;
+            }
+        }).when(dispatcher).dispatchLong(Mockito.any(Severity.class), Mockito.any(Logger.class),
+                Mockito.any(MessageTemplate.class), Mockito.any(), Mockito.any(), Mockito.anyLong());
+        final long[] logged = new long[4];
+        Thread[] threads = new Thread[logged.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int thread = i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 100000; j++) {
+                    long count = instance.occurrence(metadata, new IllegalStateException(), dispatcher);
+                    if (count >= 0) {
+                        logged[thread]++;
+                        repeats.addAndGet(count);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        instance.shutdown();
+
+        long total = repeats.get();
+        for (long each : logged) {
+            total += each;
+        }
+        assertEquals(100000L * threads.length, total);
+    }
+
+    /**
+     * Test of shutdown method, of class ExceptionDeduplicator.
+     */
+    @Test
+    public void testShutdown() throws Exception {
+        System.out.println("shutdown");
+
+        ExceptionDeduplicator instance = new ExceptionDeduplicator(0, 1, TimeUnit.HOURS);
+        JoinPointMetadata metadata = metadata();
+        LogDispatcher dispatcher = Mockito.mock(LogDispatcher.class);
+
+        assertEquals(0L, instance.occurrence(metadata, new IllegalStateException(), dispatcher));
+        assertEquals(-1L, instance.occurrence(metadata, new IllegalStateException(), dispatcher));
+        Mockito.verifyZeroInteractions(dispatcher);
+        instance.shutdown();
+
+        Mockito.verify(dispatcher).dispatchLong(Severity.DEBUG, metadata.getLogger(),
+                ExceptionDeduplicator.REPEATED, "fail", IllegalStateException.class.getName(), 1L);
+    }
+
+    /**
+     * Test of logException method with a deduplicator, of class
+     * JoinPointMetadata.
+     */
+    @Test
+    public void testLogException() throws Exception {
+        System.out.println("logException");
+
+        ExceptionDeduplicator instance = new ExceptionDeduplicator(5, 0, TimeUnit.MILLISECONDS);
+        JoinPointMetadata metadata = metadata();
+        LogDispatcher dispatcher = Mockito.mock(LogDispatcher.class);
+        Exception exception = new Exception();
+
+        instance.enter();
+        instance.enter();
+        metadata.logException(dispatcher, instance, exception, 0L);
+        instance.exit();
+        metadata.logException(dispatcher, instance, exception, 0L);
+        instance.exit();
+
+        Mockito.verify(dispatcher).dispatch(Severity.DEBUG, metadata.getLogger(), MessageTemplate.compile(Logging.DEFAULT_EXCEPTION_TEXT),
+                new Object[]{"fail", exception, exception});
+        Mockito.verifyNoMoreInteractions(dispatcher);
+        instance.shutdown();
+    }
+
+    private JoinPointMetadata metadata() throws NoSuchMethodException {
+        Method method = ExceptionDeduplicatorTest.class.getDeclaredMethod("fail");
+        LogPlan plan = new LogPlan("fail", Severity.DEBUG, false, 1, 0, false,
+                new String[]{Logging.DEFAULT_ENTER_TEXT, Logging.DEFAULT_RETURN_TEXT, Logging.DEFAULT_EXCEPTION_TEXT},
+                new int[0], null, null, null);
+        return new JoinPointMetadata(method, Mockito.mock(Logger.class), method.getParameterAnnotations(), plan);
+    }
+
+    private void fail() {
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author fernando
+ */
+public class LazyArgumentTest {
+
+    /**
+     * Test of toString method, of class LazyArgument.
+     */
+    @Test
+    public void testToString() {
+        System.out.println("toString");
+
+        assertEquals("null", limit(-1, -1).wrap(null).toString());
+        assertEquals("[1, 2, 3]", limit(3, -1).wrap(Arrays.asList(1, 2, 3)).toString());
+        assertEquals("[1, 2, ... (3 elements)]", limit(2, -1).wrap(Arrays.asList(1, 2, 3)).toString());
+        assertEquals("{a=1, ... (2 elements)}", limit(1, -1).wrap(new TreeMap<String, Integer>() {
+            {
+                put("a", 1);
+                put("b", 2);
+            }
+        }).toString());
+        assertEquals("[1, 2, ... (4 elements)]", limit(2, -1).wrap(new int[]{1, 2, 3, 4}).toString());
+        assertEquals("[... (1 elements)]", limit(0, -1).wrap(new String[]{"a"}).toString());
+        assertEquals("abc...", limit(-1, 3).wrap("abcdef").toString());
+        assertEquals("[1, ...", limit(1, 4).wrap(Collections.nCopies(10, 1)).toString());
+    }
+
+    /**
+     * Test of toString method, of class LazyArgument, rendering only once.
+     */
+    @Test
+    public void testToStringMemoized() {
+        System.out.println("toStringMemoized");
+
+        final List<String> renders = new ArrayList<String>();
+        Object value = new Object() {
+            @Override
+            public String toString() {
+                renders.add("rendered");
+                return "value";
+            }
+        };
+
+        Object result = limit(-1, -1).wrap(value);
+
+        assertTrue(renders.isEmpty());
+        assertEquals("value", result.toString());
+        assertEquals("value", result.toString());
+        assertEquals(1, renders.size());
+    }
+
+    /**
+     * Test of toString method with fields, of class LazyArgument.
+     */
+    @Test
+    public void testToStringFields() {
+        System.out.println("toStringFields");
+
+        LazyArgument.Limit limit = new LazyArgument.Limit(-1, -1, new String[]{"id", "status", "missing"});
+        Order order = new Order(42, "OPEN");
+
+        assertEquals("{id=42, status=OPEN, missing=?}", limit.wrap(order).toString());
+        assertEquals("[{id=1, status=NEW, missing=?}, {id=2, status=SENT, missing=?}]",
+                limit.wrap(Arrays.asList(new Order(1, "NEW"), new Order(2, "SENT"))).toString());
+        assertEquals("[{id=1, status=NEW}, ... (2 elements)]", new LazyArgument.Limit(1, -1, new String[]{"id", "status"})
+                .wrap(new Order[]{new Order(1, "NEW"), new Order(2, "SENT")}).toString());
+        assertEquals("{id=4...", new LazyArgument.Limit(-1, 5, new String[]{"id"}).wrap(order).toString());
+        assertEquals("null", limit.wrap(null).toString());
+    }
+
+    private static LazyArgument.Limit limit(final int elements, final int length) {
+        return new LazyArgument.Limit(new LogLimit() {
+            @Override
+            public int elements() {
+                return elements;
+            }
+
+            @Override
+            public int length() {
+                return length;
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return LogLimit.class;
+            }
+        });
+    }
+
+    private static class Order {
+
+        private final long id;
+        private final String state;
+
+        Order(long id, String state) {
+            this.id = id;
+            this.state = state;
+        }
+
+        public String getStatus() {
+            return state;
+        }
+    }
+}
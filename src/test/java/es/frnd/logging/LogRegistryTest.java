@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author fernando
+ */
+public class LogRegistryTest {
+
+    private static final String NAME = "es.frnd.logging.LogRegistryTest.advised";
+    private LogRegistry instance;
+    private JoinPointMetadata metadata;
+
+    @Before
+    public void setUp() throws NoSuchMethodException {
+        instance = new LogRegistry();
+        Method method = LogRegistryTest.class.getDeclaredMethod("advised");
+        LogPlan plan = new MessageCache(instance).createPlan(method.getAnnotation(Logging.class), "advised", method.getParameterAnnotations());
+        metadata = new JoinPointMetadata(method, Mockito.mock(Logger.class), method.getParameterAnnotations(), plan);
+        instance.register(metadata);
+    }
+
+    /**
+     * Test of setSeverity method, of class LogRegistry.
+     */
+    @Test
+    public void testSetSeverity() {
+        System.out.println("setSeverity");
+
+        assertArrayEquals(new String[]{NAME}, instance.getMethods());
+        assertEquals(Severity.DEBUG, instance.getSeverity(NAME));
+
+        instance.setSeverity("es.frnd", Severity.INFO);
+        assertEquals(Severity.INFO, metadata.getEffectiveSeverity());
+
+        instance.setSeverity(NAME, Severity.WARN);
+        instance.setSeverity("es.frnd.logging.LogRegistryTest", Severity.ERROR);
+        assertEquals(Severity.WARN, metadata.getEffectiveSeverity());
+
+        instance.reset(NAME);
+        assertEquals(Severity.ERROR, metadata.getEffectiveSeverity());
+
+        instance.resetAll();
+        assertEquals(Severity.DEBUG, metadata.getEffectiveSeverity());
+    }
+
+    /**
+     * Test of setEnabled method, of class LogRegistry.
+     */
+    @Test
+    public void testSetEnabled() {
+        System.out.println("setEnabled");
+
+        instance.setSeverity(NAME, Severity.INFO);
+        instance.setEnabled("es.frnd.logging", false);
+        assertNull(metadata.getEffectiveSeverity());
+        assertFalse(metadata.isEnabled());
+
+        instance.setEnabled("es.frnd.logging.LogRegistryTest", true);
+        assertEquals(Severity.INFO, metadata.getEffectiveSeverity());
+
+        instance.setEnabled("", false);
+        instance.reset("es.frnd.logging.LogRegistryTest");
+        assertNull(instance.getEffectiveSeverity(NAME));
+    }
+
+    /**
+     * Test of register method with metadata no longer used, of class
+     * LogRegistry.
+     */
+    @Test
+    public void testRegisterCollected() throws InterruptedException {
+        System.out.println("registerCollected");
+
+        metadata = null;
+        for (int i = 0; i < 100 && instance.getMethods().length > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertArrayEquals(new String[0], instance.getMethods());
+        assertNull(instance.getSeverity(NAME));
+    }
+
+    /**
+     * Test of registerMBean method, of class LogRegistry.
+     */
+    @Test
+    public void testRegisterMBean() throws Exception {
+        System.out.println("registerMBean");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = instance.registerMBean();
+        try {
+            assertArrayEquals(new String[]{NAME}, (String[]) server.getAttribute(name, "Methods"));
+            server.invoke(name, "setSeverity", new Object[]{NAME, "warn"}, new String[]{String.class.getName(), String.class.getName()});
+            assertEquals(Severity.WARN, metadata.getEffectiveSeverity());
+            assertEquals("WARN", server.invoke(name, "getEffectiveSeverity", new Object[]{NAME}, new String[]{String.class.getName()}));
+        } finally {
+            instance.unregisterMBean();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Logging
+    private void advised() {
+    }
+}
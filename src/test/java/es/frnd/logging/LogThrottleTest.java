@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.lang.reflect.Method;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author fernando
+ */
+public class LogThrottleTest {
+
+    /**
+     * Test of tryAcquire method with a sample rate, of class LogThrottle.
+     */
+    @Test
+    public void testTryAcquireSampled() {
+        System.out.println("tryAcquireSampled");
+
+        LogThrottle instance = new LogThrottle(3, 0);
+
+        int acquired = 0;
+        for (int i = 0; i < 9; i++) {
+            if (instance.tryAcquire()) {
+                acquired++;
+            }
+        }
+
+        assertEquals(3, acquired);
+        assertEquals(6, instance.getSuppressedCount());
+    }
+
+    /**
+     * Test of tryAcquire method with a rate limit, of class LogThrottle.
+     */
+    @Test
+    public void testTryAcquireLimited() {
+        System.out.println("tryAcquireLimited");
+
+        LogThrottle instance = new LogThrottle(1, 2);
+
+        assertTrue(instance.tryAcquire());
+        assertTrue(instance.tryAcquire());
+        assertFalse(instance.tryAcquire());
+        assertEquals(1, instance.getSuppressedCount());
+    }
+
+    /**
+     * Test of takeSuppressed method, of class LogThrottle.
+     */
+    @Test
+    public void testTakeSuppressed() {
+        System.out.println("takeSuppressed");
+
+        LogThrottle instance = new LogThrottle(2, 0);
+        instance.tryAcquire();
+        instance.tryAcquire();
+        instance.tryAcquire();
+        instance.tryAcquire();
+
+        assertEquals(2, instance.takeSuppressed());
+        instance.tryAcquire();
+        instance.tryAcquire();
+        assertEquals(0, instance.takeSuppressed());
+        assertEquals(1, instance.takeSuppressed(true));
+        assertEquals(3, instance.getSuppressedCount());
+    }
+
+    /**
+     * Test of reportLater method, of class LogThrottle.
+     */
+    @Test
+    public void testReportLater() throws NoSuchMethodException {
+        System.out.println("reportLater");
+
+        Method method = LogThrottleTest.class.getDeclaredMethod("method");
+        LogPlan plan = new LogPlan("method", Severity.DEBUG, false, 2, 0, false,
+                new String[]{Logging.DEFAULT_ENTER_TEXT, Logging.DEFAULT_RETURN_TEXT, Logging.DEFAULT_EXCEPTION_TEXT},
+                new int[0], null, null, null);
+        Logger logger = Mockito.mock(Logger.class);
+        JoinPointMetadata metadata = new JoinPointMetadata(method, logger, method.getParameterAnnotations(), plan);
+        LogDispatcher dispatcher = Mockito.mock(LogDispatcher.class);
+
+        assertTrue(metadata.tryAcquire());
+        metadata.logBefore(dispatcher, new Object[0]);
+        assertFalse(metadata.tryAcquire());
+
+        Mockito.verify(dispatcher, Mockito.timeout(3000)).dispatchLong(Severity.DEBUG, logger,
+                LogThrottle.SUPPRESSED, "method", 1L);
+    }
+
+    /**
+     * Test of create method, of class LogThrottle.
+     */
+    @Test
+    public void testCreate() {
+        System.out.println("create");
+
+        LogPlan plan = new LogPlan("method", Severity.DEBUG, false, 1, 0, false,
+                new String[]{Logging.DEFAULT_ENTER_TEXT, Logging.DEFAULT_RETURN_TEXT, Logging.DEFAULT_EXCEPTION_TEXT},
+                new int[0], null, null, null);
+
+        assertNull(LogThrottle.create(plan));
+    }
+
+    private void method() {
+    }
+}
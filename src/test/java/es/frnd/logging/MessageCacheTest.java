@@ -25,12 +25,17 @@ package es.frnd.logging;
 
 import es.frnd.logging.MessageCache.MessageType;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.junit.After;
 import org.junit.AfterClass;
 import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.Mockito;
 
 /**
  *
@@ -74,6 +79,26 @@ public class MessageCacheTest {
             return Severity.INFO;
         }
 
+        @Override
+        public boolean timed() {
+            return false;
+        }
+
+        @Override
+        public int sampleRate() {
+            return 1;
+        }
+
+        @Override
+        public int maxPerSecond() {
+            return 0;
+        }
+
+        @Override
+        public boolean batchScope() {
+            return false;
+        }
+
         @Override
         public Class<? extends Annotation> annotationType() {
             return Logging.class;
@@ -100,6 +125,26 @@ public class MessageCacheTest {
             return Severity.INFO;
         }
 
+        @Override
+        public boolean timed() {
+            return false;
+        }
+
+        @Override
+        public int sampleRate() {
+            return 1;
+        }
+
+        @Override
+        public int maxPerSecond() {
+            return 0;
+        }
+
+        @Override
+        public boolean batchScope() {
+            return false;
+        }
+
         @Override
         public Class<? extends Annotation> annotationType() {
             return Logging.class;
@@ -230,4 +275,140 @@ public class MessageCacheTest {
 
         assertArrayEquals(expResult, result);
     }
+
+    /**
+     * Test of getPlan method, of class MessageCache.
+     */
+    @Test
+    public void testGetPlan() throws NoSuchMethodException {
+        System.out.println("getPlan");
+
+        MethodSignature signature = mockSignature();
+
+        LogPlan result = instance.getPlan(signature, defaultLogAnnotation);
+
+        assertEquals("advised", result.getMethodName());
+        assertEquals(Severity.INFO, result.getSeverity());
+        assertEquals("Calling method {} with args {} {}", result.getMessage(MessageType.BEFORE));
+        assertEquals("Returning method {} with {}", result.getMessage(MessageType.AFTER));
+        assertEquals("Method {} is trowing an exception: {}", result.getMessage(MessageType.EXCEPTION));
+        assertArrayEquals(new int[]{0, 2}, result.getIncludedParameters());
+        assertArrayEquals(new Object[]{"1", 3}, instance.extractArguments(new Object[]{"1", "2", 3}, result));
+
+        assertSame(result, instance.getPlan(signature, customMessagesLogAnnotation));
+    }
+
+    /**
+     * Test of getMessage method with a timed annotation, of class MessageCache.
+     */
+    @Test
+    public void testGetMessageTimed() throws NoSuchMethodException {
+        System.out.println("getMessageTimed");
+
+        Logging timedLogAnnotation = MessageCacheTest.class.getDeclaredMethod("timed").getAnnotation(Logging.class);
+        Annotation[][] annotations = new Annotation[][]{};
+
+        assertEquals("Calling method {} with args", instance.getMessage(MessageType.BEFORE, timedLogAnnotation, "timed", annotations));
+        assertEquals("Returning method {} with {} in {} ns", instance.getMessage(MessageType.AFTER, timedLogAnnotation, "timed", annotations));
+        assertEquals("Method {} is trowing an exception: {} after {} ns", instance.getMessage(MessageType.EXCEPTION, timedLogAnnotation, "timed", annotations));
+        assertTrue(instance.createPlan(timedLogAnnotation, "timed", annotations).isTimed());
+    }
+
+    /**
+     * Test of packArguments method, of class MessageCache.
+     */
+    @Test
+    public void testPackArguments() throws NoSuchMethodException {
+        System.out.println("packArguments");
+
+        LogPlan plan = instance.getPlan(mockSignature(), defaultLogAnnotation);
+
+        Object[] result = instance.packArguments(new Object[]{"1", "2", 3}, plan);
+
+        assertArrayEquals(new Object[]{"advised", "1", 3}, result);
+    }
+
+    /**
+     * Test of getMetadata method, of class MessageCache.
+     */
+    @Test
+    public void testGetMetadata() throws NoSuchMethodException {
+        System.out.println("getMetadata");
+
+        MethodSignature signature = mockSignature();
+
+        JoinPointMetadata result = instance.getMetadata(signature, defaultLogAnnotation);
+
+        assertEquals(signature.getMethod(), result.getMethod());
+        assertEquals(MessageCacheTest.class.getName(), result.getLogger().getName());
+        assertEquals(3, result.getParameterAnnotations().length);
+        assertSame(result.getPlan(), instance.getPlan(signature, defaultLogAnnotation));
+        assertSame(result, instance.getMetadata(signature, defaultLogAnnotation));
+    }
+
+    /**
+     * Test of createPlan method with limited parameters, of class MessageCache.
+     */
+    @Test
+    public void testCreatePlanLimited() throws NoSuchMethodException {
+        System.out.println("createPlanLimited");
+
+        Method method = MessageCacheTest.class.getDeclaredMethod("limited", String.class, List.class);
+        LogPlan plan = instance.createPlan(defaultLogAnnotation, "limited", method.getParameterAnnotations(), method.getAnnotation(LogLimit.class));
+        List<Integer> values = Arrays.asList(1, 2, 3);
+
+        Object[] result = plan.packArguments(new Object[]{"1", values});
+
+        assertEquals("1", result[1]);
+        assertTrue(result[2] instanceof LazyArgument);
+        assertEquals("[1, 2, ... (3 elements)]", result[2].toString());
+        assertEquals("abc...", plan.returnValue("abcdef").toString());
+        assertSame(values, instance.getPlan(mockSignature(), defaultLogAnnotation).returnValue(values));
+    }
+
+    /**
+     * Test of findLogging method, of class MessageCache.
+     */
+    @Test
+    public void testFindLogging() throws NoSuchMethodException {
+        System.out.println("findLogging");
+
+        Logging typeAnnotation = AdvisedType.class.getAnnotation(Logging.class);
+
+        assertSame(typeAnnotation, MessageCache.findLogging(AdvisedType.class.getDeclaredMethod("inherited")));
+        assertTrue(MessageCache.findLogging(AdvisedType.class.getDeclaredMethod("overridden")).timed());
+        assertNull(MessageCache.findLogging(MessageCacheTest.class.getDeclaredMethod("advised", String.class, String.class, int.class)));
+    }
+
+    private MethodSignature mockSignature() throws NoSuchMethodException {
+        Method method = MessageCacheTest.class.getDeclaredMethod("advised", String.class, String.class, int.class);
+        MethodSignature signature = Mockito.mock(MethodSignature.class);
+        Mockito.when(signature.getMethod()).thenReturn(method);
+        Mockito.when(signature.getName()).thenReturn("advised");
+        Mockito.when(signature.getDeclaringType()).thenReturn(MessageCacheTest.class);
+        return signature;
+    }
+
+    private void advised(String first, @LogExclude String second, int third) {
+    }
+
+    @LogLimit(length = 3)
+    private String limited(String first, @LogLimit(elements = 2) List<Integer> second) {
+        return first;
+    }
+
+    @Logging(timed = true)
+    private void timed() {
+    }
+
+    @Logging(severity = Severity.INFO)
+    static class AdvisedType {
+
+        public void inherited() {
+        }
+
+        @Logging(timed = true)
+        public void overridden() {
+        }
+    }
 }
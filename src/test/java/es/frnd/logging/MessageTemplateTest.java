@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import org.junit.Test;
+import org.slf4j.helpers.MessageFormatter;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author fernando
+ */
+public class MessageTemplateTest {
+
+    /**
+     * Test of format methods, of class MessageTemplate, against SLF4J.
+     */
+    @Test
+    public void testFormat() {
+        System.out.println("format");
+
+        String[] patterns = new String[]{
+            "", "plain", "{}", "Calling method {} with args {} {}", "a {} b \\{} c {}",
+            "a \\\\{} b {}", "{}{}{}{}", "trailing {"};
+        Object[][] values = new Object[][]{
+            {}, {"method"}, {"method", 1}, {"method", null, 2.5d}, {"method", new int[]{1, 2}, new Object[]{"x", 3L}},
+            {"method", 'c', true, 4, 5}};
+        for (String pattern : patterns) {
+            MessageTemplate template = MessageTemplate.compile(pattern);
+            for (Object[] value : values) {
+                assertEquals(pattern, MessageFormatter.arrayFormat(pattern, value).getMessage(), template.format(value));
+            }
+            assertEquals(MessageFormatter.format(pattern, "one").getMessage(), template.format("one"));
+            assertEquals(MessageFormatter.format(pattern, "one", "two").getMessage(), template.format("one", "two"));
+            assertEquals(MessageFormatter.format(pattern, "one", 2L).getMessage(), template.formatLong("one", 2L));
+            assertEquals(MessageFormatter.arrayFormat(pattern, new Object[]{"one", "two", 3L}).getMessage(), template.formatLong("one", "two", 3L));
+        }
+        assertEquals(MessageTemplate.compile("{}"), MessageTemplate.compile("{}"));
+    }
+
+    /**
+     * Test of format method with a failing or reentrant toString, of class
+     * MessageTemplate.
+     */
+    @Test
+    public void testFormatToString() {
+        System.out.println("formatToString");
+
+        final MessageTemplate template = MessageTemplate.compile("value {} and {}");
+        Object failing = new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException();
+            }
+        };
+        Object reentrant = new Object() {
+            @Override
+            public String toString() {
+                return template.format("inner", "value");
+            }
+        };
+
+        assertEquals("value [FAILED toString()] and 1", template.format(failing, 1));
+        assertEquals("value value inner and value and 2", template.format(reentrant, 2));
+    }
+}
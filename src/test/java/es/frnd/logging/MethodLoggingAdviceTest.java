@@ -0,0 +1,476 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+
+/**
+ *
+ * @author fernando
+ */
+public class MethodLoggingAdviceTest {
+
+    @Mock
+    private Logger l;
+    @Mock
+    private ProceedingJoinPoint call;
+    @Mock
+    private MethodSignature signature;
+    private MethodLoggingAdvice instance;
+    private LogRegistry registry;
+
+    public MethodLoggingAdviceTest() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Before
+    public void setUp() {
+        instance = new MethodLoggingAdvice();
+        registry = new LogRegistry();
+        instance.messageCache = new MessageCache(registry) {
+            @Override
+            protected JoinPointMetadata createMetadata(MethodSignature signature, Logging logAnnotation) {
+                Method method = signature.getMethod();
+                LogPlan plan = createPlan(logAnnotation, method.getName(), method.getParameterAnnotations());
+                return new JoinPointMetadata(method, l, method.getParameterAnnotations(), plan);
+            }
+        };
+        Mockito.when(call.getSignature()).thenReturn(signature);
+        Mockito.when(l.isDebugEnabled()).thenReturn(true);
+    }
+
+    /**
+     * Test of logExecution method, of class MethodLoggingAdvice.
+     */
+    @Test
+    public void testLogExecution() throws Throwable {
+        System.out.println("logExecution");
+
+        Method method = advise("advised", String.class, String.class);
+        Mockito.when(call.getArgs()).thenReturn(new Object[]{"1", "2"});
+        Mockito.when(call.proceed()).thenReturn("result");
+
+        Object result = instance.logExecution(call, method.getAnnotation(Logging.class));
+
+        assertEquals("result", result);
+        Mockito.verify(l).debug("Calling method {} with args {}", "advised", "1");
+        Mockito.verify(l).debug("Returning method {} with {}", "advised", "result");
+    }
+
+    /**
+     * Test of logExecution method when the method throws, of class
+     * MethodLoggingAdvice.
+     */
+    @Test
+    public void testLogExecutionException() throws Throwable {
+        System.out.println("logExecutionException");
+
+        Method method = advise("advised", String.class, String.class);
+        Exception exception = new Exception();
+        Mockito.when(call.getArgs()).thenReturn(new Object[]{"1", "2"});
+        Mockito.when(call.proceed()).thenThrow(exception);
+
+        try {
+            instance.logExecution(call, method.getAnnotation(Logging.class));
+            fail();
+        } catch (Exception expected) {
+            assertSame(exception, expected);
+        }
+        Mockito.verify(l).debug("Method {} is trowing an exception: {}", "advised", exception);
+    }
+
+    /**
+     * Test of logExecution method with a timed method, of class
+     * MethodLoggingAdvice.
+     */
+    @Test
+    public void testLogExecutionTimed() throws Throwable {
+        System.out.println("logExecutionTimed");
+
+        Method method = advise("timed");
+        Mockito.when(call.getArgs()).thenReturn(new Object[]{});
+        Mockito.when(call.proceed()).thenReturn(null);
+
+        instance.logExecution(call, method.getAnnotation(Logging.class));
+
+        Mockito.verify(l).debug("Calling method {} with args", "timed");
+        Mockito.verify(l).debug(Mockito.matches("Returning method timed with null in \\d+ ns"));
+    }
+
+    /**
+     * Test of logExecution method with a timed method and call tracing, of
+     * class MethodLoggingAdvice.
+     */
+    @Test
+    public void testLogExecutionTimedTraced() throws Throwable {
+        System.out.println("logExecutionTimedTraced");
+
+        Method method = advise("timed");
+        Mockito.when(call.getArgs()).thenReturn(new Object[]{});
+        Mockito.when(call.proceed()).thenReturn(null);
+        instance.setCallTracing(true);
+
+        instance.logExecution(call, method.getAnnotation(Logging.class));
+
+        Mockito.verify(l).debug(Mockito.eq("{} Calling method {} with args"), Mockito.any(CallSpan.class), Mockito.eq("timed"));
+        Mockito.verify(l).debug(Mockito.matches("\\[.*\\] Returning method timed with null in \\d+ ns"));
+        assertNull(CallStack.currentSpan());
+    }
+
+    /**
+     * Test of logExecution method with the severity disabled, of class
+     * MethodLoggingAdvice.
+     */
+    @Test
+    public void testLogExecutionDisabled() throws Throwable {
+        System.out.println("logExecutionDisabled");
+
+        Method method = advise("advised", String.class, String.class);
+        Mockito.when(l.isDebugEnabled()).thenReturn(false);
+        Mockito.when(call.proceed()).thenReturn("result");
+
+        Object result = instance.logExecution(call, method.getAnnotation(Logging.class));
+
+        assertEquals("result", result);
+        Mockito.verify(l).isDebugEnabled();
+        Mockito.verifyNoMoreInteractions(l);
+        Mockito.verify(call, Mockito.never()).getArgs();
+    }
+
+    /**
+     * Test of logExecution method with a sampled method, of class
+     * MethodLoggingAdvice.
+     */
+    @Test
+    public void testLogExecutionSampled() throws Throwable {
+        System.out.println("logExecutionSampled");
+
+        Method method = advise("sampled");
+        Mockito.when(call.getArgs()).thenReturn(new Object[]{});
+        Mockito.when(call.proceed()).thenReturn("result");
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("result", instance.logExecution(call, method.getAnnotation(Logging.class)));
+        }
+
+        Mockito.verify(call, Mockito.times(3)).proceed();
+        Mockito.verify(l, Mockito.times(2)).debug("Calling method {} with args", "sampled");
+        Mockito.verify(l, Mockito.times(2)).debug("Returning method {} with {}", "sampled", "result");
+        Mockito.verify(l).debug("Method sampled was not logged 1 times");
+    }
+
+    /**
+     * Test of logExecution method with the severity changed at runtime, of
+     * class MethodLoggingAdvice.
+     */
+    @Test
+    public void testLogExecutionReconfigured() throws Throwable {
+        System.out.println("logExecutionReconfigured");
+
+        Method method = advise("advised", String.class, String.class);
+        Mockito.when(l.isInfoEnabled()).thenReturn(true);
+        Mockito.when(call.getArgs()).thenReturn(new Object[]{"1", "2"});
+        Mockito.when(call.proceed()).thenReturn("result");
+
+        instance.logExecution(call, method.getAnnotation(Logging.class));
+        registry.setSeverity("es.frnd.logging.MethodLoggingAdviceTest", Severity.INFO);
+        instance.logExecution(call, method.getAnnotation(Logging.class));
+        registry.setEnabled("es.frnd.logging.MethodLoggingAdviceTest.advised", false);
+        instance.logExecution(call, method.getAnnotation(Logging.class));
+
+        Mockito.verify(call, Mockito.times(3)).proceed();
+        Mockito.verify(l).debug("Returning method {} with {}", "advised", "result");
+        Mockito.verify(l).info("Returning method {} with {}", "advised", "result");
+    }
+
+    /**
+     * Test of logExecution method with nested calls and call tracing, of class
+     * MethodLoggingAdvice.
+     */
+    @Test
+    public void testLogExecutionTraced() throws Throwable {
+        System.out.println("logExecutionTraced");
+
+        final Method method = advise("advised", String.class, String.class);
+        Mockito.when(call.getArgs()).thenReturn(new Object[]{"1", "2"});
+        Mockito.when(call.proceed()).thenAnswer(new Answer<Object>() {
+            private boolean nested;
+
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                if (nested) {
+                    return "inner";
+                }
+                nested = true;
+                instance.logExecution(call, method.getAnnotation(Logging.class));
+                return "outer";
+            }
+        });
+        instance.setCallTracing(true);
+
+        assertEquals("outer", instance.logExecution(call, method.getAnnotation(Logging.class)));
+
+        ArgumentCaptor<Object[]> values = ArgumentCaptor.forClass(Object[].class);
+        Mockito.verify(l, Mockito.times(2)).debug(Mockito.eq("{} Calling method {} with args {}"), values.capture());
+        Mockito.verify(l, Mockito.times(2)).debug(Mockito.eq("{} Returning method {} with {}"), values.capture());
+        CallSpan outer = (CallSpan) values.getAllValues().get(0)[0];
+        CallSpan inner = (CallSpan) values.getAllValues().get(1)[0];
+        assertEquals(0, outer.getDepth());
+        assertEquals(0L, outer.getParentId());
+        assertEquals(outer.getSpanId(), outer.getTraceId());
+        assertEquals(1, inner.getDepth());
+        assertEquals(outer.getSpanId(), inner.getParentId());
+        assertEquals(outer.getTraceId(), inner.getTraceId());
+        assertTrue(inner.toString().endsWith("]  "));
+        assertEquals("inner", values.getAllValues().get(2)[2]);
+        assertEquals(inner.getSpanId(), ((CallSpan) values.getAllValues().get(2)[0]).getSpanId());
+        assertEquals("outer", values.getAllValues().get(3)[2]);
+        assertEquals(outer.getSpanId(), ((CallSpan) values.getAllValues().get(3)[0]).getSpanId());
+        assertNull(CallStack.currentSpan());
+    }
+
+    /**
+     * Test of logExecution method with a batch scope method, of class
+     * MethodLoggingAdvice.
+     */
+    @Test
+    public void testLogExecutionBatchScope() throws Throwable {
+        System.out.println("logExecutionBatchScope");
+
+        Method method = advise("batch");
+        LogDispatcher dispatcher = Mockito.mock(LogDispatcher.class);
+        Mockito.when(l.isDebugEnabled()).thenReturn(false);
+        instance.setDispatcher(dispatcher);
+
+        instance.logExecution(call, method.getAnnotation(Logging.class));
+
+        Mockito.verify(call).proceed();
+        Mockito.verify(dispatcher).endBatch();
+        Mockito.verifyNoMoreInteractions(dispatcher);
+    }
+
+    /**
+     * Test of logExecution method with a method returning a CompletionStage,
+     * of class MethodLoggingAdvice.
+     */
+    @Test
+    public void testLogExecutionAsync() throws Throwable {
+        System.out.println("logExecutionAsync");
+
+        Method method = advise("async");
+        CompletableFuture<String> future = new CompletableFuture<String>();
+        Mockito.when(call.getArgs()).thenReturn(new Object[]{});
+        Mockito.when(call.proceed()).thenReturn(future);
+        instance.setStatisticsEnabled(true);
+
+        Object result = instance.logExecution(call, method.getAnnotation(Logging.class));
+
+        assertSame(future, result);
+        Mockito.verify(l, Mockito.never()).debug(Mockito.eq("Returning method {} with {}"), Mockito.any(), Mockito.any());
+        assertEquals(0, instance.getStatistics().get(method).getInvocations());
+
+        future.complete("result");
+
+        Mockito.verify(l).debug("Returning method {} with {}", "async", "result");
+        assertEquals(1, instance.getStatistics().get(method).getInvocations());
+    }
+
+    /**
+     * Test of logExecution method with a CompletionStage completed on another
+     * thread while tracing calls, of class MethodLoggingAdvice.
+     */
+    @Test
+    public void testLogExecutionAsyncCallTracing() throws Throwable {
+        System.out.println("logExecutionAsyncCallTracing");
+
+        Method method = advise("async");
+        final CompletableFuture<String> future = new CompletableFuture<String>();
+        Mockito.when(call.getArgs()).thenReturn(new Object[]{});
+        Mockito.when(call.proceed()).thenReturn(future);
+        instance.setCallTracing(true);
+
+        instance.logExecution(call, method.getAnnotation(Logging.class));
+        final CallSpan[] completing = new CallSpan[1];
+        Thread thread = new Thread(() -> {
+            future.complete("result");
+            completing[0] = CallStack.currentSpan();
+        });
+        thread.start();
+        thread.join();
+
+        ArgumentCaptor<Object> called = ArgumentCaptor.forClass(Object.class);
+        ArgumentCaptor<Object[]> returned = ArgumentCaptor.forClass(Object[].class);
+        Mockito.verify(l).debug(Mockito.eq("{} Calling method {} with args"), called.capture(), Mockito.eq("async"));
+        Mockito.verify(l).debug(Mockito.eq("{} Returning method {} with {}"), returned.capture());
+        assertEquals(((CallSpan) called.getValue()).getSpanId(), ((CallSpan) returned.getValue()[0]).getSpanId());
+        assertEquals("result", returned.getValue()[2]);
+        assertNull(completing[0]);
+        assertNull(CallStack.currentSpan());
+    }
+
+    /**
+     * Test of logExecution method with a CompletionStage completed
+     * exceptionally, of class MethodLoggingAdvice.
+     */
+    @Test
+    public void testLogExecutionAsyncException() throws Throwable {
+        System.out.println("logExecutionAsyncException");
+
+        Method method = advise("async");
+        Exception exception = new Exception();
+        CompletableFuture<String> future = new CompletableFuture<String>();
+        Mockito.when(call.getArgs()).thenReturn(new Object[]{});
+        Mockito.when(call.proceed()).thenReturn(future.thenApply(value -> value));
+
+        instance.logExecution(call, method.getAnnotation(Logging.class));
+        future.completeExceptionally(exception);
+
+        Mockito.verify(l).debug("Method {} is trowing an exception: {}", "async", exception);
+        Mockito.verify(l, Mockito.never()).debug(Mockito.eq("Returning method {} with {}"), Mockito.any(), Mockito.any());
+    }
+
+    /**
+     * Test of logExecution method with flight recorder events, of class
+     * MethodLoggingAdvice.
+     */
+    @Test
+    public void testLogExecutionFlightRecorderEvents() throws Throwable {
+        System.out.println("logExecutionFlightRecorderEvents");
+
+        Method method = advise("advised", String.class, String.class);
+        Exception exception = new IllegalStateException();
+        Mockito.when(l.isDebugEnabled()).thenReturn(false);
+        Mockito.when(call.getArgs()).thenReturn(new Object[]{"1", "2"});
+        Mockito.when(call.proceed()).thenReturn("result").thenThrow(exception);
+        instance.setFlightRecorderEvents(true);
+
+        assertNull(MethodEvents.create());
+        Path file = Files.createTempFile("advice", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable(MethodEvent.class);
+                recording.start();
+                instance.logExecution(call, method.getAnnotation(Logging.class));
+                try {
+                    instance.logExecution(call, method.getAnnotation(Logging.class));
+                    fail();
+                } catch (IllegalStateException expected) {
+                }
+                recording.stop();
+                recording.dump(file);
+            }
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            events.removeIf(event -> !event.getEventType().getName().equals("es.frnd.logging.Method"));
+            assertEquals(2, events.size());
+            assertEquals(getClass().getName() + ".advised", events.get(0).getString("method"));
+            assertEquals("1", events.get(0).getString("arguments"));
+            assertNull(events.get(0).getClass("exception"));
+            assertEquals(IllegalStateException.class.getName(), events.get(1).getClass("exception").getName());
+            assertEquals(Thread.currentThread().getId(), events.get(1).getThread().getJavaThreadId());
+        } finally {
+            Files.delete(file);
+        }
+        Mockito.verify(l, Mockito.never()).debug(Mockito.anyString(), Mockito.any(), Mockito.any());
+    }
+
+    /**
+     * Test of getStatistics method, of class MethodLoggingAdvice.
+     */
+    @Test
+    public void testGetStatistics() throws Throwable {
+        System.out.println("getStatistics");
+
+        Method method = advise("advised", String.class, String.class);
+        Mockito.when(l.isDebugEnabled()).thenReturn(false);
+        Mockito.when(call.proceed()).thenReturn("result").thenThrow(new IllegalStateException());
+        instance.setStatisticsEnabled(true);
+
+        instance.logExecution(call, method.getAnnotation(Logging.class));
+        try {
+            instance.logExecution(call, method.getAnnotation(Logging.class));
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        Map<Method, StatisticsSnapshot> result = instance.getStatisticsAndReset();
+        assertEquals(1, result.size());
+        assertEquals(2, result.get(method).getInvocations());
+        assertEquals(1, result.get(method).getErrors());
+
+        result = instance.getStatistics();
+        assertEquals(0, result.get(method).getInvocations());
+        assertEquals(0, result.get(method).getErrors());
+        Mockito.verify(l, Mockito.never()).debug(Mockito.anyString(), Mockito.any(), Mockito.any());
+    }
+
+    private Method advise(String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+        Method method = MethodLoggingAdviceTest.class.getDeclaredMethod(name, parameterTypes);
+        Mockito.when(signature.getMethod()).thenReturn(method);
+        return method;
+    }
+
+    @Logging
+    private String advised(String first, @LogExclude String second) {
+        return first;
+    }
+
+    @Logging(timed = true)
+    private void timed() {
+    }
+
+    @Logging(sampleRate = 2)
+    private String sampled() {
+        return "result";
+    }
+
+    @Logging(batchScope = true)
+    private void batch() {
+    }
+
+    @Logging
+    private CompletableFuture<String> async() {
+        return null;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author fernando
+ */
+public class MethodStatisticsTest {
+
+    /**
+     * Test of bucketIndex and highestValue methods, of class MethodStatistics.
+     */
+    @Test
+    public void testBuckets() {
+        System.out.println("buckets");
+
+        long[] values = new long[]{0, 1, 15, 16, 31, 32, 33, 1000, 123456789, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = MethodStatistics.bucketIndex(value);
+            assertTrue(index < MethodStatistics.BUCKETS);
+            assertTrue(MethodStatistics.highestValue(index) >= value);
+            assertTrue(index == 0 || MethodStatistics.highestValue(index - 1) < value);
+        }
+        assertEquals(MethodStatistics.BUCKETS - 1, MethodStatistics.bucketIndex(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, MethodStatistics.highestValue(MethodStatistics.BUCKETS - 1));
+    }
+
+    /**
+     * Test of snapshot method, of class MethodStatistics.
+     */
+    @Test
+    public void testSnapshot() {
+        System.out.println("snapshot");
+
+        MethodStatistics instance = new MethodStatistics();
+        for (int i = 1; i <= 100; i++) {
+            instance.recordSuccess(i * 1000L);
+        }
+        instance.recordError(1000000L);
+
+        StatisticsSnapshot result = instance.snapshot();
+
+        assertEquals(101, result.getInvocations());
+        assertEquals(1, result.getErrors());
+        assertEquals(1000000L, result.getMax());
+        assertEquals(51000L, result.getP50(), 51000L * 0.07);
+        assertEquals(100000L, result.getP99(), 100000L * 0.07);
+        assertEquals(1000000L, result.getPercentile(100));
+        assertEquals(1000L, result.getPercentile(0), 1000L * 0.07);
+    }
+
+    /**
+     * Test of snapshotAndReset method, of class MethodStatistics.
+     */
+    @Test
+    public void testSnapshotAndReset() {
+        System.out.println("snapshotAndReset");
+
+        MethodStatistics instance = new MethodStatistics();
+        instance.recordSuccess(10);
+        instance.recordError(20);
+
+        StatisticsSnapshot result = instance.snapshotAndReset();
+
+        assertEquals(2, result.getInvocations());
+        assertEquals(1, result.getErrors());
+        assertEquals(20, result.getMax());
+
+        result = instance.snapshot();
+
+        assertEquals(0, result.getInvocations());
+        assertEquals(0, result.getErrors());
+        assertEquals(0, result.getMax());
+        assertEquals(0, result.getP99());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import java.util.UUID;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author fernando
+ */
+public class RenderCacheTest {
+
+    /**
+     * Test of render method, of class RenderCache.
+     */
+    @Test
+    public void testRender() {
+        System.out.println("render");
+
+        RenderCache instance = new RenderCache(16, UUID.class);
+        UUID id = UUID.randomUUID();
+        Object value = new Object();
+
+        assertEquals(id.toString(), instance.render(id));
+        assertEquals(id.toString(), instance.render(new UUID(id.getMostSignificantBits(), id.getLeastSignificantBits())));
+        assertSame(value, instance.render(value));
+        assertSame("text", instance.render("text"));
+        assertNull(instance.render(null));
+        assertEquals(1, instance.getHits());
+        assertEquals(1, instance.getMisses());
+        assertEquals(1, instance.size());
+        assertTrue(instance.isCached(UUID.class));
+        assertFalse(instance.isCached(Object.class));
+    }
+
+    /**
+     * Test of render method when the cache is full, of class RenderCache.
+     */
+    @Test
+    public void testRenderEvicting() {
+        System.out.println("renderEvicting");
+
+        RenderCache instance = new RenderCache(1, Integer.class);
+
+        instance.render(1);
+        instance.render(1);
+        instance.render(2);
+        instance.render(2);
+        instance.render(1);
+
+        assertEquals(1, instance.size());
+        assertEquals(2, instance.getHits());
+        assertEquals(3, instance.getMisses());
+        assertEquals("1", instance.render(1));
+        assertEquals(3, instance.getHits());
+    }
+}
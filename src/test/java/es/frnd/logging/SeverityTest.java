@@ -67,6 +67,18 @@ public class SeverityTest {
         assertArrayEquals(expResult, result);
     }
 
+    /**
+     * Test that no constant of class Severity has a body of its own, so the
+     * calls on a severity never become megamorphic.
+     */
+    @Test
+    public void testSingleClass() {
+        System.out.println("singleClass");
+        for (Severity severity : Severity.values()) {
+            assertSame(Severity.class, severity.getClass());
+        }
+    }
+
     /**
      * Test of valueOf method, of class Severity.
      */
@@ -157,24 +169,33 @@ public class SeverityTest {
         Severity.ERROR.logException(l, message, methodName, exception);
         Severity.INFO.logException(l, message, methodName, exception);
 
-        ArgumentMatcher<String> messageMatcher = new CompareEqual<String>(message);
-        ArgumentMatcher<Object[]> parametersMatcher = new ArgumentMatcher<Object[]>() {
-            @Override
-            public boolean matches(Object argument) {
-                if (argument instanceof Object[]) {
-                    Object[] args = (Object[]) argument;
-                    return args.length == 2
-                            && "methodName".equals(args[0])
-                            && exception.equals(args[1]);
-                }
-                return false;
-            }
-        };
-        Mockito.verify(l).trace(Mockito.argThat(messageMatcher), Mockito.argThat(parametersMatcher));
-        Mockito.verify(l).debug(Mockito.argThat(messageMatcher), Mockito.argThat(parametersMatcher));
-        Mockito.verify(l).error(Mockito.argThat(messageMatcher), Mockito.argThat(parametersMatcher));
-        Mockito.verify(l).info(Mockito.argThat(messageMatcher), Mockito.argThat(parametersMatcher));
-        Mockito.verify(l).warn(Mockito.argThat(messageMatcher), Mockito.argThat(parametersMatcher));
+        Mockito.verify(l).trace(message, methodName, exception);
+        Mockito.verify(l).debug(message, methodName, exception);
+        Mockito.verify(l).error(message, methodName, exception);
+        Mockito.verify(l).info(message, methodName, exception);
+        Mockito.verify(l).warn(message, methodName, exception);
+    }
+
+    /**
+     * Test of log method with less than two parameters, of class Severity.
+     */
+    @Test
+    public void testLogWithoutArray() {
+        System.out.println("logWithoutArray");
+
+        String message = "Calling method {} with args {}";
+        String methodName = "methodName";
+        Severity.TRACE.log(l, message, methodName);
+        Severity.DEBUG.log(l, message, methodName, "1");
+        Severity.INFO.log(l, message, methodName);
+        Severity.WARN.log(l, message, methodName, "1");
+        Severity.ERROR.log(l, message, methodName);
+
+        Mockito.verify(l).trace(message, methodName);
+        Mockito.verify(l).debug(message, methodName, "1");
+        Mockito.verify(l).info(message, methodName);
+        Mockito.verify(l).warn(message, methodName, "1");
+        Mockito.verify(l).error(message, methodName);
     }
 
     /**
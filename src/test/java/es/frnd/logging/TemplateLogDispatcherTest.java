@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Fernando González.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package es.frnd.logging;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+
+/**
+ *
+ * @author fernando
+ */
+public class TemplateLogDispatcherTest {
+
+    /**
+     * Test of dispatch methods, of class TemplateLogDispatcher.
+     */
+    @Test
+    public void testDispatch() {
+        System.out.println("dispatch");
+
+        Logger l = Mockito.mock(Logger.class);
+        Mockito.when(l.isInfoEnabled()).thenReturn(true);
+        TemplateLogDispatcher instance = new TemplateLogDispatcher();
+        Exception exception = new Exception("failed");
+
+        instance.dispatch(Severity.INFO, l, MessageTemplate.compile("Calling method {} with args"), "save");
+        instance.dispatch(Severity.INFO, l, MessageTemplate.compile("Returning method {} with {}"), "save", 42);
+        instance.dispatch(Severity.INFO, l, MessageTemplate.compile("Calling method {} with args {} {}"), new Object[]{"save", "a", 'b'});
+        instance.dispatch(Severity.INFO, l, MessageTemplate.compile("Method {} is trowing an exception: {}"), "save", exception);
+        instance.dispatch(Severity.INFO, l, MessageTemplate.compile("Method {} failed"), "save", exception);
+        instance.dispatchLong(Severity.INFO, l, MessageTemplate.compile("Returning method {} with {} in {} ns"), "save", null, 1234L);
+        instance.dispatchLong(Severity.INFO, l, MessageTemplate.compile("Method {} threw {} in {} ns"), "save", exception, 1234L, exception);
+        instance.dispatch(Severity.DEBUG, l, MessageTemplate.compile("Calling method {} with args"), "hidden");
+
+        Mockito.verify(l).info("Calling method save with args");
+        Mockito.verify(l).info("Returning method save with 42");
+        Mockito.verify(l).info("Calling method save with args a b");
+        Mockito.verify(l).info("Method save is trowing an exception: java.lang.Exception: failed");
+        Mockito.verify(l).info("Method save failed", exception);
+        Mockito.verify(l).info("Returning method save with null in 1234 ns");
+        Mockito.verify(l).info("Method save threw java.lang.Exception: failed in 1234 ns", exception);
+        Mockito.verify(l, Mockito.never()).debug(Mockito.anyString());
+    }
+}